@@ -0,0 +1,58 @@
+package com.spring.ragchatservice.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.spring.ragchatservice.dto.APIResponse;
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.dto.PageResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link APIResponse} serialization with the ObjectMapper configuration Spring MVC uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiResponseSerializationBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private ObjectWriter writer;
+    private APIResponse<ChatMessageDTO> single;
+    private APIResponse<PageResponse<ChatMessageDTO>> page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        writer = Jackson2ObjectMapperBuilder.json().build().writer();
+        UUID sessionId = UUID.randomUUID();
+        List<ChatMessageDTO> content = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            content.add(new ChatMessageDTO(UUID.randomUUID(), sessionId, i % 2 == 0 ? "USER" : "AI",
+                    "Message " + i + " with a realistic amount of text in it. ".repeat(4),
+                    i % 2 == 0 ? null : UUID.randomUUID(), Instant.now()));
+        }
+        single = new APIResponse<>(201, "Message added successfully", content.get(0));
+        page = new APIResponse<>(200, "Messages retrieved successfully",
+                new PageResponse<>(content, 0, PAGE_SIZE, 1_000, 50, false));
+    }
+
+    @Benchmark
+    public byte[] message() throws JsonProcessingException {
+        return writer.writeValueAsBytes(single);
+    }
+
+    @Benchmark
+    public byte[] messagePage() throws JsonProcessingException {
+        return writer.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,132 @@
+package com.spring.ragchatservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.ragchatservice.repository.ChatMessageRepository;
+import com.spring.ragchatservice.repository.projection.MessageContentView;
+import com.spring.ragchatservice.service.context.ContextWindow;
+import com.spring.ragchatservice.service.writebehind.MessageWriteBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Limit;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context building for one session of the given size, with a new turn arriving before every request
+ * so the rolling summary is exercised the way it is in production. The repository is an in-memory
+ * stand-in that answers the two queries {@link ContextWindow} issues.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextWindowBenchmark {
+
+    private static final Instant EPOCH = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Param({"10", "1000", "100000"})
+    private int sessionMessages;
+
+    private Turn[] turns;
+    private ContextWindow contextWindow;
+    private UUID sessionId;
+    private int head;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        turns = new Turn[sessionMessages];
+        for (int i = 0; i < sessionMessages; i++) {
+            turns[i] = new Turn(UUID.randomUUID(), i % 2 == 0 ? "USER" : "AI", text(random, 40 + random.nextInt(360)), EPOCH.plusMillis(i));
+        }
+        ChatMessageRepository repository = (ChatMessageRepository) Proxy.newProxyInstance(
+                ChatMessageRepository.class.getClassLoader(),
+                new Class<?>[]{ChatMessageRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByChatSessionIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc" -> newestFirst((Limit) args[2]);
+                    case "findContentBetween" -> between((Instant) args[1], (Instant) args[2], (Limit) args[3]);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        contextWindow = new ContextWindow(repository, disabledWriteBuffer(repository), 50, 8000, 1000, 160, 10_000);
+        restart();
+    }
+
+    @Benchmark
+    public String buildContext() {
+        if (++head > sessionMessages) {
+            restart();
+        }
+        return contextWindow.buildContext(sessionId, EPOCH);
+    }
+
+    /** Replays the session from its midpoint under a fresh id, so the summary starts cold again. */
+    private void restart() {
+        sessionId = UUID.randomUUID();
+        head = Math.max(1, sessionMessages / 2);
+    }
+
+    private List<MessageContentView> newestFirst(Limit limit) {
+        int count = Math.min(head, limit.max());
+        List<MessageContentView> result = new ArrayList<>(count);
+        for (int i = head - 1; i >= head - count; i--) {
+            result.add(turns[i]);
+        }
+        return result;
+    }
+
+    private List<MessageContentView> between(Instant after, Instant before, Limit limit) {
+        int from = Math.max(0, (int) (after.toEpochMilli() - EPOCH.toEpochMilli()) + 1);
+        int to = Math.min(head, (int) (before.toEpochMilli() - EPOCH.toEpochMilli()));
+        List<MessageContentView> result = new ArrayList<>();
+        for (int i = from; i < to && result.size() < limit.max(); i++) {
+            result.add(turns[i]);
+        }
+        return result;
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append((char) ('a' + random.nextInt(26)));
+            if (random.nextInt(6) == 0) {
+                text.append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    private static MessageWriteBuffer disabledWriteBuffer(ChatMessageRepository repository) {
+        return new MessageWriteBuffer(null, repository, new ObjectMapper(), false, false, Duration.ofSeconds(1));
+    }
+
+    private record Turn(UUID id, String sender, String content, Instant createdAt) implements MessageContentView {
+
+        @Override
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public String getSender() {
+            return sender;
+        }
+
+        @Override
+        public String getContent() {
+            return content;
+        }
+
+        @Override
+        public Instant getCreatedAt() {
+            return createdAt;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.spring.ragchatservice.benchmark;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.dto.ChatSessionDTO;
+import com.spring.ragchatservice.mapper.ChatMessageMapper;
+import com.spring.ragchatservice.mapper.ChatSessionMapper;
+import com.spring.ragchatservice.model.ChatMessage;
+import com.spring.ragchatservice.model.ChatSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping throughput for single results and for a page of results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    private final ChatMessageMapper messageMapper = ChatMessageMapper.INSTANCE;
+    private final ChatSessionMapper sessionMapper = ChatSessionMapper.INSTANCE;
+
+    private ChatMessage message;
+    private List<ChatMessage> messages;
+    private ChatSession session;
+    private List<ChatSession> sessions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        session = session(0);
+        message = message(session, 0);
+        messages = new ArrayList<>(PAGE_SIZE);
+        sessions = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            messages.add(message(session, i));
+            sessions.add(session(i));
+        }
+    }
+
+    @Benchmark
+    public ChatMessageDTO messageToDto() {
+        return messageMapper.toDto(message);
+    }
+
+    @Benchmark
+    public List<ChatMessageDTO> messagePageToDto() {
+        return messageMapper.toDtoList(messages);
+    }
+
+    @Benchmark
+    public ChatSessionDTO sessionToDto() {
+        return sessionMapper.toDto(session);
+    }
+
+    @Benchmark
+    public List<ChatSessionDTO> sessionPageToDto() {
+        return sessionMapper.toDtoList(sessions);
+    }
+
+    private static ChatSession session(int i) {
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setUserId("user-" + i);
+        session.setTitle("Session " + i);
+        session.setDescription("Benchmark session " + i);
+        session.setCreatedAt(Instant.now());
+        session.setUpdatedAt(Instant.now());
+        return session;
+    }
+
+    private static ChatMessage message(ChatSession session, int i) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setChatSession(session);
+        message.setSender(i % 2 == 0 ? "USER" : "AI");
+        message.setContent("Message " + i + " ".repeat(200));
+        message.setContextHash(UUID.randomUUID());
+        message.setCreatedAt(Instant.now());
+        return message;
+    }
+}
@@ -0,0 +1,128 @@
+package com.spring.ragchatservice.benchmark;
+
+import com.spring.ragchatservice.aspect.HybridRateLimiter;
+import com.spring.ragchatservice.aspect.LimitConfig;
+import com.spring.ragchatservice.aspect.RateLimit;
+import com.spring.ragchatservice.aspect.RateLimitAspect;
+import com.spring.ragchatservice.aspect.RateLimiterRegistry;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link RateLimitAspect} around an endpoint, against an embedded Redis server.
+ * {@code direct} is the same call without the proxy, so the difference is the aspect's overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitAspectBenchmark {
+
+    private static final String API_KEY = "benchmark-api-key";
+
+    @Param({"false", "true"})
+    private boolean async;
+
+    private RedisServer redisServer;
+    private RedissonClient redissonClient;
+    private Endpoint target;
+    private Endpoint proxy;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int port = freePort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + port);
+        redissonClient = Redisson.create(config);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HybridRateLimiter limiter = new HybridRateLimiter(new RateLimiterRegistry(redissonClient, 100_000),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), meterRegistry,
+                0.1, 5, Duration.ofMillis(100));
+        RateLimitAspect aspect = new RateLimitAspect(limiter, meterRegistry);
+        ReflectionTestUtils.setField(aspect, "enabled", true);
+        ReflectionTestUtils.setField(aspect, "async", async);
+        @SuppressWarnings("unchecked")
+        Map<String, LimitConfig> apiKeys = (Map<String, LimitConfig>) ReflectionTestUtils.getField(aspect, "apiKeyConfig");
+        apiKeys.put(API_KEY, new LimitConfig(Endpoint.CAPACITY, 60));
+
+        target = new Endpoint();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        proxy = factory.getProxy();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        redissonClient.shutdown();
+        redisServer.stop();
+    }
+
+    @Benchmark
+    public String direct(CurrentRequest request) {
+        return target.handle();
+    }
+
+    @Benchmark
+    public String rateLimited(CurrentRequest request) {
+        return proxy.handle();
+    }
+
+    /** Binds a request to each benchmark thread, as the DispatcherServlet would. */
+    @State(Scope.Thread)
+    public static class CurrentRequest {
+
+        @Setup(Level.Trial)
+        public void bind() {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/sessions");
+            request.setRemoteAddr("10.0.0." + Thread.currentThread().threadId() % 250);
+            request.addHeader("X-API-Key", API_KEY);
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        }
+
+        @TearDown(Level.Trial)
+        public void unbind() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    public static class Endpoint {
+
+        // High enough that the benchmark measures the check, not rejections
+        static final long CAPACITY = 1_000_000_000L;
+
+        @RateLimit(capacity = CAPACITY, interval = 60)
+        public String handle() {
+            return "ok";
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.spring.ragchatservice.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stands in for the text generation inference API behind {@code HuggingFaceService}: answers after a
+ * configurable latency, or streams tokens as server-sent events when the request asks for it.
+ */
+class FakeInferenceServer implements AutoCloseable {
+
+    private static final int STREAM_TOKENS = 16;
+
+    private final Duration latency;
+    private final Duration jitter;
+    private final Duration tokenInterval;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+
+    FakeInferenceServer(Duration latency, Duration jitter, Duration tokenInterval) throws IOException {
+        this.latency = latency;
+        this.jitter = jitter;
+        this.tokenInterval = tokenInterval;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/models/loadtest";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            sleep(latency.plusMillis(jitter.isZero() ? 0 : ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1)));
+
+            if (body.contains("\"stream\":true")) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                for (int i = 0; i < STREAM_TOKENS; i++) {
+                    out.write(("data:{\"token\":{\"text\":\"token" + i + " \",\"special\":false}}\n\n")
+                            .getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    sleep(tokenInterval);
+                }
+                return;
+            }
+
+            byte[] response = "[{\"generated_text\":\"This is a generated reply from the load test inference stub.\"}]"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
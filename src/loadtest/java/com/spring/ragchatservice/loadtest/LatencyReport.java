@@ -0,0 +1,81 @@
+package com.spring.ragchatservice.loadtest;
+
+import com.spring.ragchatservice.loadtest.LoadDriver.OperationStats;
+import com.spring.ragchatservice.loadtest.Workload.Operation;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Throughput, outcome counts and latency percentiles per operation, printed as a table and written as CSV.
+ */
+class LatencyReport {
+
+    private record Row(String operation, long count, double throughput, long succeeded, long rateLimited,
+                       long clientErrors, long serverErrors, long failed, Histogram latency) {}
+
+    private final List<Row> rows = new ArrayList<>();
+
+    LatencyReport(Map<Operation, OperationStats> stats, double seconds) {
+        Histogram total = new Histogram(3);
+        long[] totals = new long[6];
+        stats.forEach((operation, operationStats) -> {
+            long count = operationStats.count();
+            if (count == 0) {
+                return;
+            }
+            Histogram latency = operationStats.latency.copy();
+            total.add(latency);
+            Row row = new Row(operation.label, count, count / seconds, operationStats.succeeded.sum(),
+                    operationStats.rateLimited.sum(), operationStats.clientErrors.sum(),
+                    operationStats.serverErrors.sum(), operationStats.failed.sum(), latency);
+            rows.add(row);
+            totals[0] += row.count;
+            totals[1] += row.succeeded;
+            totals[2] += row.rateLimited;
+            totals[3] += row.clientErrors;
+            totals[4] += row.serverErrors;
+            totals[5] += row.failed;
+        });
+        rows.add(new Row("total", totals[0], totals[0] / seconds, totals[1], totals[2], totals[3], totals[4], totals[5], total));
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-16s %8s %9s %8s %6s %6s %6s %6s %9s %9s %9s %9s%n", "operation", "count", "req/s",
+                "2xx", "429", "4xx", "5xx", "failed", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Row row : rows) {
+            out.printf(Locale.ROOT, "%-16s %8d %9.1f %8d %6d %6d %6d %6d %9.2f %9.2f %9.2f %9.2f%n",
+                    row.operation, row.count, row.throughput, row.succeeded, row.rateLimited,
+                    row.clientErrors, row.serverErrors, row.failed,
+                    millis(row.latency, 50), millis(row.latency, 99), millis(row.latency, 99.9),
+                    row.latency.getMaxValue() / 1000.0);
+        }
+    }
+
+    void writeCsv(Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("operation,count,throughput,succeeded,rate_limited,client_errors,server_errors,failed,p50_ms,p99_ms,p999_ms,max_ms");
+        for (Row row : rows) {
+            lines.add(String.format(Locale.ROOT, "%s,%d,%.2f,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f",
+                    row.operation, row.count, row.throughput, row.succeeded, row.rateLimited,
+                    row.clientErrors, row.serverErrors, row.failed,
+                    millis(row.latency, 50), millis(row.latency, 99), millis(row.latency, 99.9),
+                    row.latency.getMaxValue() / 1000.0));
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.write(path, lines);
+    }
+
+    private static double millis(Histogram latency, double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,112 @@
+package com.spring.ragchatservice.loadtest;
+
+import com.spring.ragchatservice.loadtest.Workload.Operation;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load: calls are started at a fixed rate whether or not earlier ones have finished, and
+ * latency is measured from the moment a call was scheduled to start. A slow server therefore shows
+ * up as queueing in the percentiles instead of quietly lowering the offered load.
+ */
+class LoadDriver {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    static final class OperationStats {
+        final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder rateLimited = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final AtomicBoolean failureReported = new AtomicBoolean();
+
+        long count() {
+            return succeeded.sum() + rateLimited.sum() + clientErrors.sum() + serverErrors.sum() + failed.sum();
+        }
+    }
+
+    private final Workload workload;
+    private final LoadTestOptions options;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    LoadDriver(Workload workload, LoadTestOptions options) {
+        this.workload = workload;
+        this.options = options;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    /** Runs warmup and measurement; only calls scheduled after the warmup are recorded. */
+    Map<Operation, OperationStats> run() throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long scheduled = start; scheduled < end; scheduled += intervalNanos) {
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                long intended = scheduled;
+                Operation operation = workload.next(ThreadLocalRandom.current());
+                executor.execute(() -> call(operation, intended, intended >= measureFrom, inFlight));
+            }
+        }
+        return stats;
+    }
+
+    private void call(Operation operation, long intended, boolean measured, Semaphore inFlight) {
+        int status;
+        try {
+            inFlight.acquire();
+            try {
+                status = workload.execute(operation, ThreadLocalRandom.current());
+            } finally {
+                inFlight.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            if (!stats.get(operation).failureReported.getAndSet(true)) {
+                System.err.println(operation.label + " failed: " + e);
+            }
+            status = 0;
+        }
+        if (!measured) {
+            return;
+        }
+
+        OperationStats operationStats = stats.get(operation);
+        operationStats.latency.recordValue(Math.min(MAX_LATENCY_MICROS,
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended)));
+        if (status == 0) {
+            operationStats.failed.increment();
+        } else if (status == 429) {
+            operationStats.rateLimited.increment();
+        } else if (status >= 500) {
+            operationStats.serverErrors.increment();
+        } else if (status >= 400) {
+            operationStats.clientErrors.increment();
+        } else {
+            operationStats.succeeded.increment();
+        }
+    }
+}
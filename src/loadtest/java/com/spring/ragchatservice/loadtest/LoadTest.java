@@ -0,0 +1,58 @@
+package com.spring.ragchatservice.loadtest;
+
+import com.spring.ragchatservice.RagChatServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Boots the service against local stand-ins, seeds it, drives the configured traffic mix and reports
+ * throughput and latency percentiles. Run with {@code mvn -Pload-test verify -Dloadtest.args="rate=500"}.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        // devtools would restart the application on another thread and swallow startup failures
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        try (LocalEnvironment environment = new LocalEnvironment(options);
+             ConfigurableApplicationContext application = new SpringApplicationBuilder(RagChatServiceApplication.class)
+                     .run(environment.arguments(options));
+             ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(5))
+                     .executor(clientExecutor)
+                     .build()) {
+
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            Workload workload = new Workload(client, "http://127.0.0.1:" + port,
+                    application.getEnvironment().getRequiredProperty("app.api.key"), options);
+
+            System.out.printf("Seeding %d users x %d sessions x %d messages%n",
+                    options.users(), options.sessionsPerUser(), options.seedMessages());
+            workload.seed();
+
+            System.out.printf("Offering %d req/s: %ds warmup, %ds measured, mix %s%n", options.rate(),
+                    options.warmup().toSeconds(), options.duration().toSeconds(), options.mix());
+            LatencyReport report = new LatencyReport(new LoadDriver(workload, options).run(),
+                    options.duration().toMillis() / 1000.0);
+
+            report.print(System.out);
+            report.writeCsv(Path.of(options.output()));
+            System.out.println("Results written to " + options.output());
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        // Redisson and Netty leave non-daemon threads behind
+        System.exit(0);
+    }
+}
@@ -0,0 +1,79 @@
+package com.spring.ragchatservice.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Harness settings, given as {@code key=value} arguments. Arguments starting with {@code --} are
+ * passed through to the application, e.g. {@code --spring.datasource.hikari.maximum-pool-size=40}.
+ */
+record LoadTestOptions(Duration warmup,
+                       Duration duration,
+                       int rate,
+                       int maxInFlight,
+                       int users,
+                       int sessionsPerUser,
+                       int seedMessages,
+                       String mix,
+                       String aiBackend,
+                       Duration aiLatency,
+                       Duration aiJitter,
+                       Duration aiTokenInterval,
+                       boolean rateLimit,
+                       String output,
+                       Map<String, String> appProperties) {
+
+    static final String DEFAULT_MIX = "create-session:3,get-session:10,user-sessions:10,add-message:25,"
+            + "stream-message:2,list-messages:20,messages-cursor:15,reply-status:10,rename-session:3,toggle-favorite:2";
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        Map<String, String> appProperties = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got '" + arg + "'");
+            }
+            String key = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            if (key.startsWith("--")) {
+                appProperties.put(key.substring(2), value);
+            } else {
+                values.put(key, value);
+            }
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                DurationStyle.detectAndParse(take(values, "warmup", "15s")),
+                DurationStyle.detectAndParse(take(values, "duration", "60s")),
+                Integer.parseInt(take(values, "rate", "200")),
+                Integer.parseInt(take(values, "max-in-flight", "2000")),
+                Integer.parseInt(take(values, "users", "100")),
+                Integer.parseInt(take(values, "sessions-per-user", "2")),
+                Integer.parseInt(take(values, "seed-messages", "40")),
+                take(values, "mix", DEFAULT_MIX),
+                take(values, "ai-backend", "http"),
+                DurationStyle.detectAndParse(take(values, "ai-latency", "200ms")),
+                DurationStyle.detectAndParse(take(values, "ai-jitter", "50ms")),
+                DurationStyle.detectAndParse(take(values, "ai-token-interval", "10ms")),
+                Boolean.parseBoolean(take(values, "rate-limit", "false")),
+                take(values, "output", "target/loadtest-result.csv"),
+                appProperties);
+
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet());
+        }
+        if (!options.aiBackend.equals("http") && !options.aiBackend.equals("stub")) {
+            throw new IllegalArgumentException("ai-backend must be http or stub");
+        }
+        return options;
+    }
+
+    private static String take(Map<String, String> values, String key, String defaultValue) {
+        String value = values.remove(key);
+        return value != null ? value : defaultValue;
+    }
+}
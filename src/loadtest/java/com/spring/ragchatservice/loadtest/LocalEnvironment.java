@@ -0,0 +1,67 @@
+package com.spring.ragchatservice.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local stand-ins for everything the service talks to: an embedded Postgres, an embedded Redis
+ * server for Redisson, and the fake inference API. Nothing needs to be installed or running.
+ */
+class LocalEnvironment implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final RedisServer redis;
+    private final int redisPort;
+    private final FakeInferenceServer inference;
+
+    LocalEnvironment(LoadTestOptions options) throws IOException {
+        this.postgres = EmbeddedPostgres.builder().start();
+        this.redisPort = freePort();
+        this.redis = new RedisServer(redisPort);
+        redis.start();
+        this.inference = new FakeInferenceServer(options.aiLatency(), options.aiJitter(), options.aiTokenInterval());
+    }
+
+    /**
+     * Application arguments that point the service at the stand-ins. Passed as command line
+     * arguments so they take precedence over application.properties and the environment.
+     */
+    String[] arguments(LoadTestOptions options) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", postgres.getJdbcUrl("postgres", "postgres"));
+        properties.put("spring.datasource.username", "postgres");
+        properties.put("spring.datasource.password", "postgres");
+        properties.put("spring.data.redis.host", "127.0.0.1");
+        properties.put("spring.data.redis.port", redisPort);
+        properties.put("huggingface.api.url", inference.url());
+        properties.put("app.ai.router.backends", options.aiBackend().equals("http") ? "huggingface" : "stub");
+        properties.put("app.ai.stub.latency", options.aiLatency().toMillis() + "ms");
+        properties.put("app.ai.stub.token-interval", options.aiTokenInterval().toMillis() + "ms");
+        properties.put("app.rate-limit.enabled", options.rateLimit());
+        properties.put("app.retrieval.index.dir", "target/loadtest/retrieval-index");
+        properties.put("logging.level.root", "WARN");
+        properties.putAll(options.appProperties());
+        return properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inference.close();
+        redis.stop();
+        postgres.close();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
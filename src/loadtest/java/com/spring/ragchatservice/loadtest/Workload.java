@@ -0,0 +1,253 @@
+package com.spring.ragchatservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The traffic mix: which controller calls are made, against which sessions, and how their responses
+ * feed later calls (new sessions, the latest message to poll a reply for, the cursor to scroll back with).
+ */
+class Workload {
+
+    enum Operation {
+        CREATE_SESSION("create-session"),
+        GET_SESSION("get-session"),
+        USER_SESSIONS("user-sessions"),
+        ADD_MESSAGE("add-message"),
+        STREAM_MESSAGE("stream-message"),
+        LIST_MESSAGES("list-messages"),
+        MESSAGES_CURSOR("messages-cursor"),
+        REPLY_STATUS("reply-status"),
+        RENAME_SESSION("rename-session"),
+        TOGGLE_FAVORITE("toggle-favorite");
+
+        final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        static Operation of(String label) {
+            for (Operation operation : values()) {
+                if (operation.label.equals(label)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation '" + label + "'");
+        }
+    }
+
+    private record User(String id, String ip) {}
+
+    private static final class Session {
+        final UUID id;
+        final User user;
+        volatile UUID lastMessageId;
+        volatile String cursor;
+
+        Session(UUID id, User user) {
+            this.id = id;
+            this.user = user;
+        }
+    }
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final String[] WORDS = ("how do i configure the retrieval index for larger documents and what "
+            + "happens when the context window is full can you summarise the previous answer in two sentences").split(" ");
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final String apiKey;
+    private final LoadTestOptions options;
+    private final Operation[] weighted;
+    private final List<User> users = new ArrayList<>();
+    private final List<Session> sessions = Collections.synchronizedList(new ArrayList<>());
+
+    Workload(HttpClient client, String baseUrl, String apiKey, LoadTestOptions options) {
+        this.client = client;
+        this.baseUrl = baseUrl + "/api/chat-sessions";
+        this.apiKey = apiKey;
+        this.options = options;
+        this.weighted = parseMix(options.mix());
+        for (int i = 0; i < options.users(); i++) {
+            users.add(new User("loadtest-user-" + i, "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255)));
+        }
+    }
+
+    /** Creates the starting sessions with some history, so reads have something to page through. */
+    void seed() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> pending = new ArrayList<>();
+            for (User user : users) {
+                for (int i = 0; i < options.sessionsPerUser(); i++) {
+                    pending.add(executor.submit(() -> seedSession(user)));
+                }
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        }
+    }
+
+    private Void seedSession(User user) throws IOException, InterruptedException {
+        Session session = createSession(user);
+        if (options.seedMessages() > 0) {
+            List<Map<String, String>> messages = new ArrayList<>();
+            for (int i = 0; i < options.seedMessages(); i++) {
+                messages.add(Map.of("sender", i % 2 == 0 ? "USER" : "AI", "content", sentence(ThreadLocalRandom.current())));
+            }
+            expectSuccess(send(post(user, "/" + session.id + "/messages/batch", Map.of("messages", messages))));
+        }
+        return null;
+    }
+
+    Operation next(ThreadLocalRandom random) {
+        return weighted[random.nextInt(weighted.length)];
+    }
+
+    /** Performs one call and returns its HTTP status. */
+    int execute(Operation operation, ThreadLocalRandom random) throws IOException, InterruptedException {
+        if (operation == Operation.CREATE_SESSION) {
+            return createSession(users.get(random.nextInt(users.size()))) != null ? 201 : 0;
+        }
+
+        Session session = operation == Operation.REPLY_STATUS ? sessionWithReply(random) : randomSession(random);
+        User user = session.user;
+        String path = "/" + session.id;
+
+        HttpResponse<String> response = switch (operation) {
+            case GET_SESSION -> send(get(user, path));
+            case USER_SESSIONS -> send(get(user, "/user/" + user.id + "/cursor?pageSize=20"));
+            case ADD_MESSAGE -> send(post(user, path + "/messages",
+                    Map.of("sender", "USER", "content", sentence(random))));
+            case STREAM_MESSAGE -> send(request(user, path + "/messages/stream")
+                    .header("Accept", "text/event-stream")
+                    .POST(body(Map.of("sender", "USER", "content", sentence(random))))
+                    .build());
+            case LIST_MESSAGES -> send(get(user, path + "/messages?pageNumber=0&pageSize=20"));
+            case MESSAGES_CURSOR -> {
+                String cursor = session.cursor;
+                yield send(get(user, path + "/messages/cursor?pageSize=20" + (cursor != null ? "&cursor=" + cursor : "")));
+            }
+            case REPLY_STATUS -> send(get(user, path + "/messages/" + session.lastMessageId + "/reply"));
+            case RENAME_SESSION -> send(request(user, path + "/title")
+                    .method("PATCH", body(Map.of("newTitle", "Renamed " + UUID.randomUUID())))
+                    .build());
+            case TOGGLE_FAVORITE -> send(request(user, path + "/favorite")
+                    .method("PATCH", HttpRequest.BodyPublishers.noBody())
+                    .build());
+            case CREATE_SESSION -> throw new IllegalStateException();
+        };
+
+        if (response.statusCode() / 100 == 2) {
+            if (operation == Operation.ADD_MESSAGE) {
+                session.lastMessageId = UUID.fromString(objectMapper.readTree(response.body()).path("data").path("id").asText());
+            } else if (operation == Operation.MESSAGES_CURSOR) {
+                JsonNode next = objectMapper.readTree(response.body()).path("data").path("nextCursor");
+                session.cursor = next.isTextual() ? next.asText() : null;
+            }
+        }
+        return response.statusCode();
+    }
+
+    private Session randomSession(ThreadLocalRandom random) {
+        return sessions.get(random.nextInt(sessions.size()));
+    }
+
+    /** A session whose latest message was added during the run, so it has a reply to poll. */
+    private Session sessionWithReply(ThreadLocalRandom random) {
+        for (int attempt = 0; attempt < 16; attempt++) {
+            Session session = randomSession(random);
+            if (session.lastMessageId != null) {
+                return session;
+            }
+        }
+        throw new IllegalStateException("No replies to poll yet");
+    }
+
+    private Session createSession(User user) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(post(user, "", Map.of(
+                "userId", user.id,
+                "title", "Load test " + UUID.randomUUID(),
+                "description", "Created by the load test harness")));
+        if (response.statusCode() / 100 != 2) {
+            return null;
+        }
+        Session session = new Session(UUID.fromString(objectMapper.readTree(response.body()).path("data").path("id").asText()), user);
+        sessions.add(session);
+        return session;
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest get(User user, String path) {
+        return request(user, path).GET().build();
+    }
+
+    private HttpRequest post(User user, String path, Object body) throws IOException {
+        return request(user, path).POST(body(body)).build();
+    }
+
+    private HttpRequest.Builder request(User user, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("X-API-Key", apiKey)
+                .header("X-Forwarded-For", user.ip)
+                .header("Content-Type", "application/json");
+    }
+
+    private HttpRequest.BodyPublisher body(Object body) throws IOException {
+        return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+    }
+
+    private static void expectSuccess(HttpResponse<String> response) {
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private static String sentence(ThreadLocalRandom random) {
+        int words = 8 + random.nextInt(40);
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            sentence.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        sentence.setCharAt(sentence.length() - 1, '?');
+        return sentence.toString();
+    }
+
+    private static Operation[] parseMix(String mix) {
+        List<Operation> weighted = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            Operation operation = Operation.of(parts[0]);
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            for (int i = 0; i < weight; i++) {
+                weighted.add(operation);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operations");
+        }
+        return weighted.toArray(Operation[]::new);
+    }
+}
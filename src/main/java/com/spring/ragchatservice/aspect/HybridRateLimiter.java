@@ -0,0 +1,173 @@
+package com.spring.ragchatservice.aspect;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.client.RedisException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-tier rate limiter. Each node leases permits from the Redis token bucket in batches and
+ * hands them out from a local bucket, only going back to Redis once its batch is spent.
+ * The distributed capacity/interval still bounds the cluster; at worst a node's unspent
+ * lease goes unused.
+ * <p>
+ * A lease is {@code lease-ratio} of the capacity but at least {@code min-lease} permits, so small
+ * limits such as 5 a minute are leased whole rather than one permit per round trip; it never
+ * exceeds the capacity.
+ * <p>
+ * Redis calls are bounded by a timeout and go through the {@code redis} circuit breaker and
+ * bulkhead. While Redis is slow or down, each node enforces the full limit on its own instead,
+ * trading accuracy for latency.
+ * <p>
+ * Decisions are counted as {@code rate.limit.permits} by key class ({@code endpoint} or
+ * {@code global}), outcome and where they were made ({@code local}, {@code redis} or
+ * {@code fallback}); Redis lease round trips are timed as {@code rate.limit.redis}.
+ */
+@Component
+@Slf4j
+public class HybridRateLimiter {
+
+    private static final String REDIS = "redis";
+
+    private final RateLimiterRegistry registry;
+    private final double leaseRatio;
+    private final long minLease;
+    private final Duration redisTimeout;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    public HybridRateLimiter(RateLimiterRegistry registry,
+                             CircuitBreakerRegistry circuitBreakerRegistry,
+                             BulkheadRegistry bulkheadRegistry,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.rate-limit.lease-ratio:0.1}") double leaseRatio,
+                             @Value("${app.rate-limit.min-lease:5}") long minLease,
+                             @Value("${app.rate-limit.redis-timeout:100ms}") Duration redisTimeout) {
+        this.registry = registry;
+        this.leaseRatio = leaseRatio;
+        this.minLease = minLease;
+        this.redisTimeout = redisTimeout;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(REDIS);
+        this.bulkhead = bulkheadRegistry.bulkhead(REDIS);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean tryAcquire(String key, long capacity, long intervalSec) {
+        RateLimiterRegistry.Handle handle = registry.get(key);
+        if (handle.bucket().tryConsume()) {
+            count(key, true, "local");
+            return true;
+        }
+        return await(key, guardedLease(handle, capacity, intervalSec), handle, capacity, intervalSec);
+    }
+
+    /**
+     * Checks all limits at once. Leases that have to go to Redis are issued together through the
+     * async API, so their round trips overlap; the caller only waits for the slowest one, which on
+     * a virtual thread releases the carrier instead of holding a platform thread.
+     */
+    public boolean tryAcquireAll(List<LimitRequest> requests) {
+        List<LimitRequest> leased = new ArrayList<>();
+        List<RateLimiterRegistry.Handle> handles = new ArrayList<>();
+        List<CompletableFuture<Boolean>> pending = new ArrayList<>();
+
+        for (LimitRequest request : requests) {
+            RateLimiterRegistry.Handle handle = registry.get(request.key());
+            if (handle.bucket().tryConsume()) {
+                count(request.key(), true, "local");
+            } else {
+                leased.add(request);
+                handles.add(handle);
+                pending.add(guardedLease(handle, request.capacity(), request.intervalSec()));
+            }
+        }
+
+        boolean acquired = true;
+        for (int i = 0; i < pending.size(); i++) {
+            LimitRequest request = leased.get(i);
+            acquired &= await(request.key(), pending.get(i), handles.get(i), request.capacity(), request.intervalSec());
+        }
+        return acquired;
+    }
+
+    private CompletableFuture<Boolean> guardedLease(RateLimiterRegistry.Handle handle, long capacity, long intervalSec) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return circuitBreaker.executeCompletionStage(() -> Bulkhead.decorateCompletionStage(bulkhead,
+                        () -> lease(handle, capacity, intervalSec).orTimeout(redisTimeout.toMillis(), TimeUnit.MILLISECONDS))
+                .get())
+                .toCompletableFuture()
+                .whenComplete((acquired, e) -> sample.stop(meterRegistry.timer("rate.limit.redis",
+                        "outcome", e == null ? "success" : (e instanceof CompletionException ? e.getCause() : e).getClass().getSimpleName())));
+    }
+
+    private boolean await(String key, CompletableFuture<Boolean> lease, RateLimiterRegistry.Handle handle,
+                          long capacity, long intervalSec) {
+        boolean acquired;
+        try {
+            acquired = lease.join();
+        } catch (CompletionException e) {
+            // Redis slow, failing, or shed by the breaker/bulkhead: enforce the limit on this node only
+            log.debug("Rate limiting locally, Redis unavailable: {}", e.getCause().toString());
+            acquired = handle.fallback().tryConsumeWindow(capacity, TimeUnit.SECONDS.toNanos(intervalSec));
+            count(key, acquired, "fallback");
+            return acquired;
+        }
+        count(key, acquired, "redis");
+        return acquired;
+    }
+
+    private void count(String key, boolean acquired, String source) {
+        meterRegistry.counter("rate.limit.permits",
+                "class", key.substring(0, Math.max(0, key.indexOf(':'))),
+                "outcome", acquired ? "accepted" : "rejected",
+                "source", source).increment();
+    }
+
+    private CompletableFuture<Boolean> lease(RateLimiterRegistry.Handle handle, long capacity, long intervalSec) {
+        return leaseOnce(handle, capacity, intervalSec)
+                .exceptionallyCompose(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (!(cause instanceof RedisException) || cause.getMessage() == null
+                            || !cause.getMessage().contains("not initialized")) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    // Key evicted behind our back (e.g. FLUSHDB or maxmemory), reconfigure and retry once
+                    registry.invalidate(handle);
+                    return leaseOnce(handle, capacity, intervalSec);
+                });
+    }
+
+    private CompletableFuture<Boolean> leaseOnce(RateLimiterRegistry.Handle handle, long capacity, long intervalSec) {
+        long batch = leaseSize(capacity);
+        return registry.prepare(handle, capacity, intervalSec)
+                .thenCompose(ready -> handle.limiter().tryAcquireAsync(batch).toCompletableFuture())
+                .thenCompose(acquired -> {
+                    if (acquired) {
+                        handle.bucket().refill(batch - 1, TimeUnit.SECONDS.toNanos(intervalSec));
+                        return CompletableFuture.completedFuture(true);
+                    }
+                    // Not enough left for a whole batch, settle for a single permit
+                    return batch > 1
+                            ? handle.limiter().tryAcquireAsync(1).toCompletableFuture()
+                            : CompletableFuture.completedFuture(false);
+                });
+    }
+
+    private long leaseSize(long capacity) {
+        return Math.max(1, Math.min(capacity, Math.max(minLease, (long) (capacity * leaseRatio))));
+    }
+}
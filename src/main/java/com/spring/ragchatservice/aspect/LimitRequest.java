@@ -0,0 +1,4 @@
+package com.spring.ragchatservice.aspect;
+
+public record LimitRequest(String key, long capacity, long intervalSec) {
+}
@@ -0,0 +1,62 @@
+package com.spring.ragchatservice.aspect;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Node-local share of a distributed limit: a batch of permits leased from Redis that is spent
+ * without further round trips. Leases are only valid for the interval they were granted in.
+ */
+class LocalTokenBucket {
+
+    private final AtomicReference<Lease> lease = new AtomicReference<>(Lease.EMPTY);
+
+    boolean tryConsume() {
+        return lease.get().tryTake(System.nanoTime());
+    }
+
+    void refill(long permits, long validForNanos) {
+        lease.set(new Lease(permits, System.nanoTime() + validForNanos));
+    }
+
+    /**
+     * Fixed-window limit enforced locally: once the current lease lapses, a fresh one of
+     * {@code permits} is started for the next {@code windowNanos}.
+     */
+    boolean tryConsumeWindow(long permits, long windowNanos) {
+        long now = System.nanoTime();
+        Lease current = lease.get();
+        if (now - current.expiresAtNanos >= 0) {
+            Lease fresh = new Lease(permits, now + windowNanos);
+            current = lease.compareAndSet(current, fresh) ? fresh : lease.get();
+        }
+        return current.tryTake(now);
+    }
+
+    private static final class Lease {
+
+        static final Lease EMPTY = new Lease(0, System.nanoTime());
+
+        private final AtomicLong remaining;
+        private final long expiresAtNanos;
+
+        Lease(long permits, long expiresAtNanos) {
+            this.remaining = new AtomicLong(permits);
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean tryTake(long now) {
+            if (now - expiresAtNanos >= 0) {
+                return false;
+            }
+            long current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return true;
+        }
+    }
+}
@@ -1,20 +1,20 @@
 package com.spring.ragchatservice.aspect;
 
 import com.spring.ragchatservice.exception.RateLimitException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.redisson.api.RRateLimiter;
-import org.redisson.api.RateType;
-import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
-import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -23,15 +23,26 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class RateLimitAspect {
 
-    private final RedissonClient redissonClient;
+    private final HybridRateLimiter hybridRateLimiter;
+    private final MeterRegistry meterRegistry;
     private final Map<String, LimitConfig> apiKeyConfig = new ConcurrentHashMap<>(Map.of(
             "3e413391c9fd5d17e6247377beb218a0", new LimitConfig(100, 60),
             "3e413391c9fd5d17e6247377beb218a1", new LimitConfig(1000, 60)
     ));
 
+    @Value("${app.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rate-limit.async:${spring.threads.virtual.enabled:false}}")
+    private boolean async;
+
     @Around("@annotation(rateLimit)")
     public Object applyRateLimit(ProceedingJoinPoint joinPoint, RateLimit rateLimit) throws Throwable  {
 
+        if (!enabled) {
+            return joinPoint.proceed();
+        }
+
         HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder
                 .currentRequestAttributes()).getRequest();
 
@@ -45,25 +56,34 @@ public class RateLimitAspect {
 
         // Per-endpoint, per-IP limit
         String endpointKey = "endpoint:" + clientIp + ":" + methodKey;
-        enforceLimiter(endpointKey, rateLimit.capacity(), rateLimit.interval());
 
         // Global per-API-key limit
         LimitConfig config = apiKeyConfig.get(apiKey);
         String globalKey = "global:{" + apiKey + "}";
-        enforceLimiter(globalKey, config.getCapacity(), config.getIntervalInSeconds());
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (async) {
+                boolean acquired = hybridRateLimiter.tryAcquireAll(List.of(
+                        new LimitRequest(endpointKey, rateLimit.capacity(), rateLimit.interval()),
+                        new LimitRequest(globalKey, config.getCapacity(), config.getIntervalInSeconds())));
+                if (!acquired) {
+                    throw new RateLimitException("Rate limit exceeded");
+                }
+            } else {
+                enforceLimiter(endpointKey, rateLimit.capacity(), rateLimit.interval());
+                enforceLimiter(globalKey, config.getCapacity(), config.getIntervalInSeconds());
+            }
+        } finally {
+            sample.stop(meterRegistry.timer("rate.limit.check", "method", methodKey));
+        }
 
         return joinPoint.proceed();
 
     }
 
     private void enforceLimiter(String key, long capacity, long intervalSec) {
-        RRateLimiter limiter = redissonClient.getRateLimiter(key);
-
-        // Token-bucket
-        limiter.trySetRate(RateType.OVERALL, capacity, Duration.ofSeconds(intervalSec));
-        limiter.expire(Duration.ofMinutes(5)); // auto remove idle keys
-
-        if (!limiter.tryAcquire(1)) {
+        if (!hybridRateLimiter.tryAcquire(key, capacity, intervalSec)) {
             throw new RateLimitException("Rate limit exceeded");
         }
     }
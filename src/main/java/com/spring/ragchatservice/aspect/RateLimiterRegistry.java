@@ -0,0 +1,98 @@
+package com.spring.ragchatservice.aspect;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded local registry of Redis rate limiters, keyed by {@code endpoint:<ip>:<method>} and
+ * {@code global:{apiKey}}. Looking a limiter up is local; the rate is set and the key TTL armed
+ * on the first lease, and after that the TTL is only pushed out again when it is about to lapse.
+ */
+@Component("redisRateLimiterRegistry") // "rateLimiterRegistry" is taken by the resilience4j auto-configuration
+public class RateLimiterRegistry {
+
+    private static final Duration KEY_TTL = Duration.ofMinutes(5); // auto remove idle keys
+    private static final long REFRESH_MARGIN_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final RedissonClient redissonClient;
+    private final Cache<String, Handle> handles;
+
+    public RateLimiterRegistry(RedissonClient redissonClient,
+                               @Value("${app.rate-limit.registry.max-size:100000}") long maxSize) {
+        this.redissonClient = redissonClient;
+        this.handles = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(KEY_TTL)
+                .build();
+    }
+
+    public Handle get(String key) {
+        return handles.get(key, k -> new Handle(redissonClient.getRateLimiter(k)));
+    }
+
+    /**
+     * Makes sure the Redis limiter behind the handle exists with the given rate.
+     * @return Stage that completes once the limiter can be used
+     */
+    public CompletableFuture<Void> prepare(Handle handle, long capacity, long intervalSec) {
+        long now = System.nanoTime();
+        long expiresAt = handle.keyExpiresAt.get();
+
+        if (expiresAt == 0 || now - expiresAt >= 0) {
+            // New, or Redis has dropped the key: set the rate (token bucket) before using it
+            return handle.limiter.trySetRateAsync(RateType.OVERALL, capacity, Duration.ofSeconds(intervalSec))
+                    .thenCompose(set -> handle.limiter.expireAsync(KEY_TTL))
+                    .thenAccept(armed -> handle.keyExpiresAt.set(System.nanoTime() + KEY_TTL.toNanos()))
+                    .toCompletableFuture();
+        }
+        if (now - (expiresAt - REFRESH_MARGIN_NANOS) >= 0
+                && handle.keyExpiresAt.compareAndSet(expiresAt, now + KEY_TTL.toNanos())) {
+            handle.limiter.expireAsync(KEY_TTL);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Forces the rate to be set again on the next lease, e.g. after the key was evicted behind our back.
+     */
+    public void invalidate(Handle handle) {
+        handle.keyExpiresAt.set(0);
+    }
+
+    public static final class Handle {
+
+        private final RRateLimiter limiter;
+        private final LocalTokenBucket bucket = new LocalTokenBucket();
+        private final LocalTokenBucket fallback = new LocalTokenBucket();
+        private final AtomicLong keyExpiresAt = new AtomicLong();
+
+        private Handle(RRateLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        public RRateLimiter limiter() {
+            return limiter;
+        }
+
+        LocalTokenBucket bucket() {
+            return bucket;
+        }
+
+        /**
+         * Node-local stand-in for the whole limit, used while Redis is unavailable.
+         */
+        LocalTokenBucket fallback() {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.spring.ragchatservice.config;
+
+import com.spring.ragchatservice.service.ai.AIService;
+import com.spring.ragchatservice.service.ai.CachingAIService;
+import com.spring.ragchatservice.service.ai.HuggingFaceService;
+import com.spring.ragchatservice.service.ai.LocalStubAIService;
+import com.spring.ragchatservice.service.ai.MeteredAIService;
+import com.spring.ragchatservice.service.ai.OpenAIService;
+import com.spring.ragchatservice.service.ai.ResilientAIService;
+import com.spring.ragchatservice.service.ai.RoutingAIService;
+import com.spring.ragchatservice.service.ai.SingleFlightAIService;
+import com.spring.ragchatservice.service.cache.SemanticResponseCache;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Composes the {@link AIService} the rest of the application uses: the semantic cache, then
+ * request coalescing, then routing over the configured model backends, each behind its own
+ * circuit breaker and bulkhead ({@code ai-<backend>}, configured from the {@code ai} template)
+ * and metered as seen by the router.
+ */
+@Configuration
+public class AIServiceConfig {
+
+    @Value("${app.ai.router.backends:huggingface}")
+    private List<String> backends;
+
+    @Value("${app.ai.router.ewma-alpha:0.2}")
+    private double ewmaAlpha;
+
+    @Value("${app.ai.router.hedge.enabled:false}")
+    private boolean hedging;
+
+    @Value("${app.ai.router.hedge.initial-deadline:2s}")
+    private Duration hedgeInitialDeadline;
+
+    @Value("${app.ai.router.hedge.min-deadline:100ms}")
+    private Duration hedgeMinDeadline;
+
+    @Value("${app.ai.router.explore-ratio:0.05}")
+    private double exploreRatio;
+
+    @Value("${app.ai.timeout:60s}")
+    private Duration timeout;
+
+    @Value("${app.ai.single-flight.cluster.enabled:false}")
+    private boolean clusterSingleFlight;
+
+    @Value("${app.ai.single-flight.timeout:60s}")
+    private Duration singleFlightTimeout;
+
+    @Bean
+    public RoutingAIService routingAIService(HuggingFaceService huggingFaceService,
+                                             OpenAIService openAIService,
+                                             LocalStubAIService localStubAIService,
+                                             CircuitBreakerRegistry circuitBreakerRegistry,
+                                             BulkheadRegistry bulkheadRegistry,
+                                             MeterRegistry meterRegistry) {
+        Map<String, AIService> available = Map.of(
+                "huggingface", huggingFaceService,
+                "openai", openAIService,
+                "stub", localStubAIService);
+
+        Map<String, AIService> selected = new LinkedHashMap<>();
+        for (String name : backends) {
+            AIService backend = available.get(name.trim());
+            if (backend == null) {
+                throw new IllegalArgumentException("Unknown AI backend '" + name + "', expected one of " + available.keySet());
+            }
+            String instance = "ai-" + name.trim();
+            AIService resilient = new ResilientAIService(backend,
+                    circuitBreakerRegistry.circuitBreaker(instance, "ai"),
+                    bulkheadRegistry.bulkhead(instance, "ai"),
+                    timeout);
+            selected.put(name.trim(), new MeteredAIService(resilient, meterRegistry, name.trim()));
+        }
+        return new RoutingAIService(selected, ewmaAlpha, hedging, hedgeInitialDeadline, hedgeMinDeadline, exploreRatio);
+    }
+
+    @Bean
+    public SingleFlightAIService singleFlightAIService(RoutingAIService routingAIService,
+                                                       RedissonClient redissonClient) {
+        return new SingleFlightAIService(routingAIService, clusterSingleFlight ? redissonClient : null,
+                singleFlightTimeout);
+    }
+
+    @Bean
+    @Primary
+    public AIService aiService(SingleFlightAIService singleFlightAIService,
+                               SemanticResponseCache semanticResponseCache) {
+        return new CachingAIService(singleFlightAIService, semanticResponseCache);
+    }
+}
@@ -2,9 +2,12 @@ package com.spring.ragchatservice.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spring.ragchatservice.dto.APIResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -16,9 +19,12 @@ import java.io.IOException;
 import java.util.Collections;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
+    private final MeterRegistry meterRegistry;
+
     @Value("${app.api.key}")
     private String validApiKey;
 
@@ -27,12 +33,14 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
 
         String requestPath = request.getRequestURI();
+        Timer.Sample sample = Timer.start(meterRegistry);
 
         // Skip API key validation for public endpoints
         if (requestPath.startsWith("/actuator/health")
                 || requestPath.startsWith("/swagger-ui")
                 || requestPath.startsWith("/v3/api-docs")
                 || requestPath.equals("/")) {
+            stop(sample, "skipped");
             filterChain.doFilter(request, response);
             return;
         }
@@ -55,6 +63,7 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 response.setContentType("application/json");
                 response.getWriter().write(new ObjectMapper().writeValueAsString(responseBody));
+                stop(sample, "rejected");
                 return;
             }
 
@@ -64,6 +73,12 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
             SecurityContextHolder.getContext().setAuthentication(authentication);
         }
 
+        stop(sample, "accepted");
         filterChain.doFilter(request, response);
     }
+
+    // Times the filter's own work only, not the rest of the chain
+    private void stop(Timer.Sample sample, String outcome) {
+        sample.stop(meterRegistry.timer("http.auth.filter", "outcome", outcome));
+    }
 }
\ No newline at end of file
@@ -36,6 +36,12 @@ public class RedissonConfig {
     @Value("${spring.data.redis.client-name:redisson-client}")
     private String clientName;
 
+    @Value("${redisson.threads:16}")
+    private int threads;
+
+    @Value("${redisson.netty-threads:32}")
+    private int nettyThreads;
+
     @Bean
     @Primary
     public RedissonClient redissonClient() {
@@ -67,8 +73,8 @@ public class RedissonConfig {
         }
 
         // Set thread pools
-        config.setThreads(16);
-        config.setNettyThreads(32);
+        config.setThreads(threads);
+        config.setNettyThreads(nettyThreads);
 
         // Use JSON codec for better readability in Redis
         config.setCodec(new org.redisson.codec.JsonJacksonCodec());
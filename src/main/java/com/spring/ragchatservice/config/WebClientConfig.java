@@ -1,13 +1,82 @@
 package com.spring.ragchatservice.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
+
+    @Value("${app.ai.http.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${app.ai.http.pending-acquire-max-count:500}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${app.ai.http.pending-acquire-timeout:5s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${app.ai.http.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${app.ai.http.max-life-time:5m}")
+    private Duration maxLifeTime;
+
+    @Value("${app.ai.http.evict-interval:30s}")
+    private Duration evictInterval;
+
+    @Value("${app.ai.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${app.ai.http.response-timeout:60s}")
+    private Duration responseTimeout;
+
+    @Value("${app.ai.http.http2.enabled:true}")
+    private boolean http2;
+
+    /**
+     * Bounded pool for AI backends; pool gauges and acquire timers are published to Micrometer
+     * under {@code reactor.netty.connection.provider.*} with {@code name=ai}.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider aiConnectionProvider() {
+        return ConnectionProvider.builder("ai")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                .metrics(true)
+                .build();
+    }
+
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder().build();
+    public WebClient webClient(ConnectionProvider aiConnectionProvider) {
+        // HTTP/2 is negotiated through ALPN on TLS connections, falling back to HTTP/1.1
+        HttpProtocol[] protocols = http2
+                ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                : new HttpProtocol[]{HttpProtocol.HTTP11};
+
+        HttpClient httpClient = HttpClient.create(aiConnectionProvider)
+                .protocol(protocols)
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(responseTimeout)
+                // One tag value per backend host rather than per request URI
+                .metrics(true, uri -> "/");
+
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
     }
 }
@@ -4,9 +4,15 @@ import com.spring.ragchatservice.aspect.RateLimit;
 import com.spring.ragchatservice.dto.APIResponse;
 import com.spring.ragchatservice.dto.ChatMessageDTO;
 import com.spring.ragchatservice.dto.CreateMessageRequest;
+import com.spring.ragchatservice.dto.CreateMessagesBatchRequest;
+import com.spring.ragchatservice.dto.ExportFormat;
+import com.spring.ragchatservice.dto.GenerationJobDTO;
+import com.spring.ragchatservice.dto.PageCursor;
 import com.spring.ragchatservice.dto.PageResponse;
+import com.spring.ragchatservice.dto.SliceResponse;
 import com.spring.ragchatservice.exception.InvalidPaginationParameterException;
 import com.spring.ragchatservice.service.ChatMessageService;
+import com.spring.ragchatservice.service.ChatSessionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -15,12 +21,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,6 +45,7 @@ import java.util.UUID;
 public class ChatMessageController {
 
     private final ChatMessageService chatMessageService;
+    private final ChatSessionService chatSessionService;
 
     @PostMapping
     @Operation(summary = "Add a message to a chat session")
@@ -49,6 +63,56 @@ public class ChatMessageController {
                 .body(new APIResponse<>(HttpStatus.CREATED.value(), "Message added", message));
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Add a batch of messages to a chat session")
+    @RateLimit(capacity = 5, interval = 60)
+    public ResponseEntity<APIResponse<List<ChatMessageDTO>>> addMessages(
+            @PathVariable UUID chatSessionId,
+            @Valid @RequestBody CreateMessagesBatchRequest batchRequest) {
+
+        List<ChatMessageDTO> messages = chatMessageService.addMessages(chatSessionId, batchRequest.getMessages());
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(new APIResponse<>(HttpStatus.CREATED.value(), "Messages added", messages));
+    }
+
+    @PostMapping("/stream")
+    @Operation(summary = "Add a message and stream the AI reply as server-sent events")
+    @RateLimit(capacity = 5, interval = 60)
+    public Flux<ServerSentEvent<String>> streamMessage(
+            @PathVariable UUID chatSessionId,
+            @Valid @RequestBody CreateMessageRequest createMessageRequest) {
+
+        return chatMessageService.streamMessage(chatSessionId, createMessageRequest)
+                .map(token -> ServerSentEvent.builder(token).event("token").build())
+                .concatWithValues(ServerSentEvent.<String>builder().event("done").build());
+    }
+
+    @GetMapping("/{messageId}/reply")
+    @Operation(summary = "Poll the status of the AI reply to a message")
+    @RateLimit(capacity = 60, interval = 60)
+    public ResponseEntity<APIResponse<GenerationJobDTO>> getReplyStatus(
+            @PathVariable UUID chatSessionId,
+            @PathVariable UUID messageId) {
+
+        GenerationJobDTO status = chatMessageService.getReplyStatus(chatSessionId, messageId);
+        return ResponseEntity.ok(new APIResponse<>(HttpStatus.OK.value(), "Reply status retrieved", status));
+    }
+
+    @GetMapping("/contexts/{contextHash}")
+    @Operation(summary = "Get the retrieved context listed with a message by its hash")
+    @RateLimit(capacity = 60, interval = 60)
+    public ResponseEntity<APIResponse<String>> getRetrievedContext(
+            @PathVariable UUID chatSessionId,
+            @PathVariable UUID contextHash) {
+
+        String context = chatMessageService.getRetrievedContext(chatSessionId, contextHash);
+        // Content-addressed: the same hash always names the same context
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable())
+                .body(new APIResponse<>(HttpStatus.OK.value(), "Retrieved context retrieved", context));
+    }
+
     @GetMapping
     @Operation(summary = "Get paginated messages for a chat session")
     @RateLimit(capacity = 5, interval = 60)
@@ -78,6 +142,36 @@ public class ChatMessageController {
         return ResponseEntity.ok(new APIResponse<>(HttpStatus.OK.value(), "Paginated messages retrieved", pageResponse));
     }
 
+    @GetMapping("/cursor")
+    @Operation(summary = "Get messages for a chat session using cursor pagination")
+    @RateLimit(capacity = 5, interval = 60)
+    public ResponseEntity<APIResponse<SliceResponse<ChatMessageDTO>>> getMessagesByCursor(
+            @PathVariable UUID chatSessionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int pageSize) {
+
+        if (pageSize <= 0) {
+            throw new InvalidPaginationParameterException("Page size must be greater than 0");
+        }
+
+        PageCursor pageCursor = cursor != null ? PageCursor.decode(cursor) : null;
+        Slice<ChatMessageDTO> slice = chatMessageService.getSessionMessagesByCursor(chatSessionId, pageCursor, pageSize);
+
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            ChatMessageDTO last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        SliceResponse<ChatMessageDTO> sliceResponse = new SliceResponse<>(
+                slice.getContent(),
+                slice.getNumberOfElements(),
+                slice.hasNext(),
+                nextCursor
+        );
+
+        return ResponseEntity.ok(new APIResponse<>(HttpStatus.OK.value(), "Messages retrieved", sliceResponse));
+    }
+
     @GetMapping("/all")
     @Operation(summary = "Get all messages for a chat session")
     @RateLimit(capacity = 5, interval = 60)
@@ -85,4 +179,22 @@ public class ChatMessageController {
         List<ChatMessageDTO> messages = chatMessageService.getSessionMessages(chatSessionId);
         return ResponseEntity.ok(new APIResponse<>(HttpStatus.OK.value(), "All messages retrieved", messages));
     }
+
+    @GetMapping("/export")
+    @Operation(summary = "Stream the full transcript of a chat session as NDJSON or a JSON array")
+    @RateLimit(capacity = 5, interval = 60)
+    public ResponseEntity<StreamingResponseBody> exportMessages(
+            @PathVariable UUID chatSessionId,
+            @RequestParam(defaultValue = "ndjson") ExportFormat format) {
+
+        // Fail with a proper 404 before the response is committed
+        chatSessionService.getSessionById(chatSessionId);
+
+        StreamingResponseBody body = out -> chatMessageService.writeTranscript(chatSessionId, format, out);
+        MediaType mediaType = format == ExportFormat.JSON
+                ? MediaType.APPLICATION_JSON
+                : MediaType.APPLICATION_NDJSON;
+
+        return ResponseEntity.ok().contentType(mediaType).body(body);
+    }
 }
@@ -12,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -78,6 +79,36 @@ public class ChatSessionController {
         return ResponseEntity.ok(APIResponse.success(response, "Paginated user sessions retrieved successfully"));
     }
 
+    @GetMapping("/user/{userId}/cursor")
+    @Operation(summary = "Get sessions for a user using cursor pagination")
+    @RateLimit(capacity = 5, interval = 60)
+    public ResponseEntity<APIResponse<SliceResponse<ChatSessionDTO>>> getUserSessionsByCursor(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int pageSize) {
+
+        if (pageSize <= 0) {
+            throw new InvalidPaginationParameterException("Page size must be greater than 0");
+        }
+
+        PageCursor pageCursor = cursor != null ? PageCursor.decode(cursor) : null;
+        Slice<ChatSessionDTO> sessions = chatSessionService.getUserSessionsByCursor(userId, pageCursor, pageSize);
+
+        String nextCursor = null;
+        if (sessions.hasNext()) {
+            ChatSessionDTO last = sessions.getContent().get(sessions.getNumberOfElements() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        SliceResponse<ChatSessionDTO> response = new SliceResponse<>(
+                sessions.getContent(),
+                sessions.getNumberOfElements(),
+                sessions.hasNext(),
+                nextCursor
+        );
+
+        return ResponseEntity.ok(APIResponse.success(response, "User sessions retrieved successfully"));
+    }
+
     @GetMapping("/{sessionId}")
     @Operation(summary = "Get session by ID")
     @RateLimit(capacity = 5, interval = 60)
@@ -0,0 +1,54 @@
+package com.spring.ragchatservice.controller;
+
+import com.spring.ragchatservice.aspect.RateLimit;
+import com.spring.ragchatservice.dto.APIResponse;
+import com.spring.ragchatservice.dto.IngestDocumentRequest;
+import com.spring.ragchatservice.dto.RetrievedChunkDTO;
+import com.spring.ragchatservice.exception.InvalidPaginationParameterException;
+import com.spring.ragchatservice.service.retrieval.RetrievalService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/documents")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Documents", description = "APIs for the retrieval corpus")
+public class DocumentController {
+
+    private final RetrievalService retrievalService;
+
+    @PostMapping
+    @Operation(summary = "Chunk, embed and index a document")
+    @RateLimit(capacity = 5, interval = 60)
+    public ResponseEntity<APIResponse<Integer>> ingestDocument(
+            @Valid @RequestBody IngestDocumentRequest ingestDocumentRequest) {
+
+        int chunks = retrievalService.ingest(ingestDocumentRequest.getDocumentId(), ingestDocumentRequest.getContent());
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(new APIResponse<>(HttpStatus.CREATED.value(), "Document indexed", chunks));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Retrieve the chunks most similar to a query")
+    @RateLimit(capacity = 5, interval = 60)
+    public ResponseEntity<APIResponse<List<RetrievedChunkDTO>>> search(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "4") int k) {
+
+        if (k <= 0) {
+            throw new InvalidPaginationParameterException("k must be greater than 0");
+        }
+
+        List<RetrievedChunkDTO> chunks = retrievalService.retrieve(query, k);
+        return ResponseEntity.ok(new APIResponse<>(HttpStatus.OK.value(), "Chunks retrieved", chunks));
+    }
+}
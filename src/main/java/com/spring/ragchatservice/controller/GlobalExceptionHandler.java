@@ -4,6 +4,8 @@ import com.spring.ragchatservice.dto.APIResponse;
 import com.spring.ragchatservice.exception.InvalidPaginationParameterException;
 import com.spring.ragchatservice.exception.RateLimitException;
 import com.spring.ragchatservice.exception.ResourceNotFoundException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
@@ -86,4 +88,12 @@ public class GlobalExceptionHandler {
         APIResponse<Object> response = APIResponse.error(HttpStatus.BAD_REQUEST.value(), ex.getMessage(), null);
         return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
     }
+
+    @ExceptionHandler({CallNotPermittedException.class, BulkheadFullException.class})
+    public ResponseEntity<APIResponse<Object>> handleDependencyUnavailable(RuntimeException ex) {
+        log.warn("Dependency unavailable: {}", ex.getMessage());
+        APIResponse<Object> response = APIResponse.error(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Service temporarily unavailable, please retry shortly", null);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
 }
@@ -1,5 +1,6 @@
 package com.spring.ragchatservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,6 +17,13 @@ public class ChatMessageDTO {
     private UUID sessionId;
     private String sender;
     private String content;
+    // Only on messages just written; listings carry the hash and the context is fetched separately
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String retrievedContext;
+    private UUID contextHash;
     private Instant createdAt;
+
+    public ChatMessageDTO(UUID id, UUID sessionId, String sender, String content, UUID contextHash, Instant createdAt) {
+        this(id, sessionId, sender, content, null, contextHash, createdAt);
+    }
 }
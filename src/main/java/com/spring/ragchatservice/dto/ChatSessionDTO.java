@@ -19,5 +19,6 @@ public class ChatSessionDTO {
     private boolean isFavorite;
     private Instant createdAt;
     private Instant updatedAt;
+    private Instant archivedAt;
 
 }
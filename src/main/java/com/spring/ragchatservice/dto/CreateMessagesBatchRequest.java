@@ -0,0 +1,16 @@
+package com.spring.ragchatservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CreateMessagesBatchRequest {
+
+    @NotEmpty(message = "Messages are required")
+    @Size(max = 500, message = "At most 500 messages per batch")
+    private List<@Valid CreateMessageRequest> messages;
+}
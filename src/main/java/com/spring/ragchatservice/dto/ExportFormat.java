@@ -0,0 +1,6 @@
+package com.spring.ragchatservice.dto;
+
+public enum ExportFormat {
+    NDJSON,
+    JSON
+}
@@ -0,0 +1,19 @@
+package com.spring.ragchatservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GenerationJobDTO {
+
+    private UUID messageId;
+    private UUID sessionId;
+    private GenerationStatus status;
+    private ChatMessageDTO reply;
+    private String error;
+}
@@ -0,0 +1,8 @@
+package com.spring.ragchatservice.dto;
+
+public enum GenerationStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
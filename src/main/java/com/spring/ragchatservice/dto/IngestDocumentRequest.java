@@ -0,0 +1,14 @@
+package com.spring.ragchatservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class IngestDocumentRequest {
+
+    @NotBlank(message = "Document ID is required")
+    private String documentId;
+
+    @NotBlank(message = "Content is required")
+    private String content;
+}
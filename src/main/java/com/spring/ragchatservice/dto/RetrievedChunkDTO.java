@@ -0,0 +1,16 @@
+package com.spring.ragchatservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RetrievedChunkDTO {
+
+    private String documentId;
+    private int chunkIndex;
+    private String content;
+    private float score;
+}
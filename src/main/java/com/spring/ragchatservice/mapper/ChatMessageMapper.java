@@ -17,12 +17,14 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessageDTO, ChatMessag
 
     @Override
     @Mapping(source = "chatSession.id", target = "sessionId")
+    @Mapping(target = "retrievedContext", ignore = true)
     ChatMessageDTO toDto(ChatMessage entity);
 
     @Mapping(target = "chatSession", ignore = true) // set manually in service
     @Mapping(target = "id", ignore = true)          // auto-generated
     @Mapping(target = "createdAt", ignore = true)  // auditing
     @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "contextHash", ignore = true) // set once the context is stored
     ChatMessage toEntity(CreateMessageRequest request);
 
 }
@@ -22,5 +22,6 @@ public interface ChatSessionMapper extends BaseMapper<ChatSessionDTO, ChatSessio
     @Mapping(target = "createdAt", ignore = true) // handled by auditing
     @Mapping(target = "updatedAt", ignore = true) // handled by auditing
     @Mapping(target = "favorite", constant = "false") // default value
+    @Mapping(target = "archivedAt", ignore = true) // set by the message archiver
     ChatSession toEntity(CreateSessionRequest request);
 }
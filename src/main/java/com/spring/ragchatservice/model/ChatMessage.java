@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.UUID;
+
 @Entity
 @Table(name = "chat_messages")
 @Data
@@ -19,8 +21,9 @@ public class ChatMessage extends BaseEntity {
     @Column(columnDefinition = "TEXT", nullable = false)
     private String content;
 
-    @Column(columnDefinition = "TEXT")
-    private String retrievedContext;
+    // Key of the retrieved context in context_blobs, stored once however many messages share it
+    @Column(name = "context_hash")
+    private UUID contextHash;
 
     @Column(nullable = false)
     private String sender;
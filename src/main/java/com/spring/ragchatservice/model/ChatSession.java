@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
 import java.util.List;
 
 @Entity
@@ -26,6 +27,10 @@ public class ChatSession extends BaseEntity{
     @Column(name = "is_favorite", nullable = false)
     private boolean favorite = false;
 
+    // Set and cleared by the message archiver only, never written back from a loaded entity
+    @Column(name = "archived_at", insertable = false, updatable = false)
+    private Instant archivedAt;
+
     @OneToMany(mappedBy = "chatSession", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ChatMessage> chatMessages;
 
@@ -0,0 +1,57 @@
+package com.spring.ragchatservice.repository;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Inserts messages that already carry their id and timestamp with one multi-row statement per
+ * call. Messages already stored, or whose session no longer exists, are skipped, so replaying a
+ * batch is harmless.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChatMessageBulkInserter {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO chat_messages (id, session_id, sender, content, context_hash, created_at, updated_at) " +
+            "SELECT v.id, v.session_id, v.sender, v.content, v.context_hash, v.created_at, v.created_at FROM (VALUES ";
+    private static final String ROW = "(?::uuid, ?::uuid, ?, ?, ?::uuid, ?::timestamptz)";
+    private static final String INSERT_SUFFIX =
+            ") AS v (id, session_id, sender, content, context_hash, created_at) " +
+            "WHERE EXISTS (SELECT 1 FROM chat_sessions s WHERE s.id = v.session_id) " +
+            "ON CONFLICT (id, created_at) DO NOTHING";
+
+    // Postgres caps a statement at 65535 bind parameters
+    public static final int MAX_ROWS = 65535 / 6;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param messages At most {@link #MAX_ROWS} messages, their retrieved context already stored
+     * @return The number of rows inserted
+     */
+    public int insert(List<ChatMessageDTO> messages) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + INSERT_SUFFIX.length() + messages.size() * (ROW.length() + 1));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[messages.size() * 6];
+        int i = 0;
+        for (ChatMessageDTO message : messages) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(ROW);
+            args[i++] = message.getId().toString();
+            args[i++] = message.getSessionId().toString();
+            args[i++] = message.getSender();
+            args[i++] = message.getContent();
+            args[i++] = message.getContextHash() == null ? null : message.getContextHash().toString();
+            args[i++] = Timestamp.from(message.getCreatedAt());
+        }
+        return jdbcTemplate.update(sql.append(INSERT_SUFFIX).toString(), args);
+    }
+}
@@ -1,14 +1,76 @@
 package com.spring.ragchatservice.repository;
 
+import com.spring.ragchatservice.dto.ChatMessageDTO;
 import com.spring.ragchatservice.model.ChatMessage;
+import com.spring.ragchatservice.repository.projection.MessageContentView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
-     List<ChatMessage> findByChatSessionIdOrderByCreatedAtAsc(UUID chatSessionId);
-     Page<ChatMessage> findByChatSessionId(UUID chatSessionId, Pageable pageable);
+
+     // Read-only listings select straight into the DTO; chatSession.id is the FK column, no join, and
+     // the retrieved context stays behind its hash
+     String SELECT_DTO = "select new com.spring.ragchatservice.dto.ChatMessageDTO(" +
+             "m.id, m.chatSession.id, m.sender, m.content, m.contextHash, m.createdAt) from ChatMessage m ";
+
+     // chat_messages is range-partitioned on created_at: every query carries a lower bound (no message
+     // predates its session) so Postgres prunes the partitions older than the session
+     @Query(SELECT_DTO + "where m.chatSession.id = :sessionId and m.createdAt >= :since order by m.createdAt asc")
+     List<ChatMessageDTO> findDtosBySessionId(@Param("sessionId") UUID sessionId, @Param("since") Instant since);
+
+     // Cursor-backed: rows are fetched from the JDBC result set in batches while the stream is consumed
+     @QueryHints({
+             @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+             @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+     })
+     @Query(SELECT_DTO + "where m.chatSession.id = :sessionId and m.createdAt >= :since order by m.createdAt asc, m.id asc")
+     Stream<ChatMessageDTO> streamDtosBySessionId(@Param("sessionId") UUID sessionId, @Param("since") Instant since);
+
+     @Query(value = SELECT_DTO + "where m.chatSession.id = :sessionId and m.createdAt >= :since",
+             countQuery = "select count(m) from ChatMessage m where m.chatSession.id = :sessionId and m.createdAt >= :since")
+     Page<ChatMessageDTO> findDtosBySessionId(@Param("sessionId") UUID sessionId, @Param("since") Instant since,
+                                              Pageable pageable);
+
+     @Query(SELECT_DTO + "where m.chatSession.id = :sessionId and m.createdAt >= :since " +
+             "order by m.createdAt desc, m.id desc")
+     Slice<ChatMessageDTO> findFirstDtosBySessionId(@Param("sessionId") UUID sessionId, @Param("since") Instant since,
+                                                    Pageable pageable);
+
+     @Query(SELECT_DTO + "where m.chatSession.id = :sessionId and m.createdAt >= :since " +
+             "and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id)) " +
+             "order by m.createdAt desc, m.id desc")
+     Slice<ChatMessageDTO> findDtosBySessionIdBefore(@Param("sessionId") UUID sessionId,
+                                                     @Param("since") Instant since,
+                                                     @Param("createdAt") Instant createdAt,
+                                                     @Param("id") UUID id,
+                                                     Pageable pageable);
+
+     List<MessageContentView> findByChatSessionIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(UUID chatSessionId,
+                                                                                              Instant since,
+                                                                                              Limit limit);
+
+     @Query("select m.id as id, m.sender as sender, m.content as content, m.createdAt as createdAt from ChatMessage m " +
+             "where m.chatSession.id = :sessionId and m.createdAt > :after and m.createdAt < :before " +
+             "order by m.createdAt asc")
+     List<MessageContentView> findContentBetween(@Param("sessionId") UUID sessionId,
+                                                 @Param("after") Instant after,
+                                                 @Param("before") Instant before,
+                                                 Limit limit);
+
+     @Query("select m.id from ChatMessage m where m.id in :ids and m.createdAt >= :since")
+     List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids, @Param("since") Instant since);
 }
@@ -1,18 +1,55 @@
 package com.spring.ragchatservice.repository;
 
+import com.spring.ragchatservice.dto.ChatSessionDTO;
 import com.spring.ragchatservice.model.ChatSession;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
 import java.util.UUID;
 import java.util.List;
 
 @Repository
 public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID> {
 
-    List<ChatSession> findByUserIdOrderByUpdatedAtDesc(String userId);
-    List<ChatSession> findByUserIdAndFavoriteOrderByUpdatedAtDesc(String userId, boolean isFavorite);
+    // Read-only listings select straight into the DTO, skipping entity hydration
+    String SELECT_DTO = "select new com.spring.ragchatservice.dto.ChatSessionDTO(" +
+            "s.id, s.userId, s.title, s.description, s.favorite, s.createdAt, s.updatedAt, s.archivedAt) from ChatSession s ";
+
+    @Query(SELECT_DTO + "where s.userId = :userId order by s.updatedAt desc")
+    List<ChatSessionDTO> findDtosByUserId(@Param("userId") String userId);
+
+    @Query(SELECT_DTO + "where s.userId = :userId and s.favorite = :favorite order by s.updatedAt desc")
+    List<ChatSessionDTO> findDtosByUserIdAndFavorite(@Param("userId") String userId,
+                                                     @Param("favorite") boolean favorite);
+
+    @Query(value = SELECT_DTO + "where s.userId = :userId",
+            countQuery = "select count(s) from ChatSession s where s.userId = :userId")
+    Page<ChatSessionDTO> findDtosByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query(SELECT_DTO + "where s.userId = :userId order by s.createdAt desc, s.id desc")
+    Slice<ChatSessionDTO> findFirstDtosByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query(SELECT_DTO + "where s.userId = :userId " +
+            "and (s.createdAt < :createdAt or (s.createdAt = :createdAt and s.id < :id)) " +
+            "order by s.createdAt desc, s.id desc")
+    Slice<ChatSessionDTO> findDtosByUserIdBefore(@Param("userId") String userId,
+                                                 @Param("createdAt") Instant createdAt,
+                                                 @Param("id") UUID id,
+                                                 Pageable pageable);
+
+    @Query(SELECT_DTO + "where s.id = :id")
+    ChatSessionDTO findDtoById(@Param("id") UUID id);
 
-    Page<ChatSession> findByUserId(String userId, Pageable pageable);
+    // Bulk delete: messages go through the FK's ON DELETE CASCADE, one index probe per partition,
+    // instead of being loaded and deleted by id
+    @Modifying
+    @Query("delete from ChatSession s where s.id = :id")
+    int deleteSessionById(@Param("id") UUID id);
 }
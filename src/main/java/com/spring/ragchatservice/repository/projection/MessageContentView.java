@@ -0,0 +1,18 @@
+package com.spring.ragchatservice.repository.projection;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Slim read-only view of a chat message used to build prompt context.
+ */
+public interface MessageContentView {
+
+    UUID getId();
+
+    String getSender();
+
+    String getContent();
+
+    Instant getCreatedAt();
+}
@@ -1,89 +1,452 @@
 package com.spring.ragchatservice.service;
 
 import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.dto.ChatSessionDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.spring.ragchatservice.dto.CreateMessageRequest;
+import com.spring.ragchatservice.dto.ExportFormat;
+import com.spring.ragchatservice.dto.GenerationJobDTO;
+import com.spring.ragchatservice.dto.PageCursor;
 import com.spring.ragchatservice.exception.ResourceNotFoundException;
 import com.spring.ragchatservice.mapper.ChatMessageMapper;
 import com.spring.ragchatservice.model.ChatMessage;
 import com.spring.ragchatservice.model.ChatSession;
 import com.spring.ragchatservice.repository.ChatMessageRepository;
 import com.spring.ragchatservice.service.ai.AIService;
+import com.spring.ragchatservice.service.archive.MessageArchive;
+import com.spring.ragchatservice.service.context.ContextBlobStore;
+import com.spring.ragchatservice.service.context.ContextWindow;
+import com.spring.ragchatservice.service.generation.GenerationJob;
+import com.spring.ragchatservice.service.generation.GenerationJobQueue;
+import com.spring.ragchatservice.service.retrieval.RetrievalService;
+import com.spring.ragchatservice.service.writebehind.MessageWriteBuffer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.AbstractPageRequest;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ChatMessageService {
 
+    private static final String AI_SENDER = "AI";
+
+    // Message timestamps come from the clock of whichever node wrote them, which may trail the session's
+    // creation time; lower bounds derived from it leave this much slack so no message is pruned away
+    public static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+
     private final ChatMessageRepository messageRepository;
     private final ChatSessionService chatSessionService;
     private final ChatMessageMapper chatMessageMapper;
     private final AIService aiService;
+    private final ContextWindow contextWindow;
+    private final RetrievalService retrievalService;
+    private final ObjectMapper objectMapper;
+    private final GenerationJobQueue generationJobQueue;
+    private final MessageWriteBuffer writeBuffer;
+    private final MessageArchive messageArchive;
+    private final ContextBlobStore contextBlobStore;
+
+    @Value("${app.generation.enabled:true}")
+    private boolean generationEnabled;
 
-    @Transactional
     public ChatMessageDTO addMessage(UUID sessionId, CreateMessageRequest createMessageRequest) {
         log.info("Adding message to session: {}", sessionId);
 
-        ChatSession chatSession = chatSessionService.findById(sessionId);
+        ChatMessageDTO savedMessage = saveMessage(sessionId, createMessageRequest.getSender(),
+                createMessageRequest.getContent(), retrieveContext(createMessageRequest));
 
-        ChatMessage message = new ChatMessage();
-        message.setChatSession(chatSession);
-        message.setSender(createMessageRequest.getSender());
-        message.setContent(createMessageRequest.getContent());
-        message.setRetrievedContext(createMessageRequest.getRetrievedContext());
+        // The reply is generated by a worker once the message is stored, so no connection is held during generation
+        if (generationEnabled && !AI_SENDER.equalsIgnoreCase(savedMessage.getSender())) {
+            generationJobQueue.submit(new GenerationJob(savedMessage.getId(), sessionId,
+                    savedMessage.getContent(), savedMessage.getRetrievedContext()));
+        }
 
-        ChatMessage savedMessage = messageRepository.save(message);
+        return savedMessage;
+    }
 
-        // Prepare context from previous messages
-        String context = chatSession.getChatMessages().stream()
-                .map(ChatMessage::getContent)
-                .reduce("", (acc, msg) -> acc + "\n" + msg);
+    /**
+     * Generates and stores the AI reply for a queued job. Runs outside any transaction: the context
+     * reads and the insert each borrow a connection briefly, the model call holds none.
+     */
+    public ChatMessageDTO generateReply(GenerationJob job) {
+        String context = join(job.retrievedContext(), contextWindow.buildContext(job.sessionId(), partitionBound(job.sessionId())));
+        String reply = aiService.generateResponse(job.prompt(), context);
+        // The reply references the same retrieved context as the prompt; the conversation part is the history itself
+        return saveMessage(job.sessionId(), AI_SENDER, reply, job.retrievedContext());
+    }
 
-        // Generate AI response
-       // String aiResponse = aiService.generateResponse(createMessageRequest.getContent(), context);
+    public GenerationJobDTO getReplyStatus(UUID sessionId, UUID messageId) {
+        GenerationJobDTO status = generationJobQueue.getStatus(messageId);
+        if (status == null || !status.getSessionId().equals(sessionId)) {
+            throw new ResourceNotFoundException("No reply generation found for message: " + messageId);
+        }
+        return status;
+    }
 
-        // Save AI response
-       /* ChatMessage aiMessage = new ChatMessage();
-        aiMessage.setChatSession(chatSession);
-        aiMessage.setSender("AI");
-        aiMessage.setContent(aiResponse);
-        aiMessage.setRetrievedContext(context);
-        ChatMessage aiSavedMessage = messageRepository.save(aiMessage); */
+    @Transactional
+    public List<ChatMessageDTO> addMessages(UUID sessionId, List<CreateMessageRequest> createMessageRequests) {
+        log.info("Adding {} messages to session: {}", createMessageRequests.size(), sessionId);
 
-        return chatMessageMapper.toDto(savedMessage);
+        restoreIfArchived(sessionId);
+        ChatSession chatSession = chatSessionService.getReference(sessionId);
+
+        List<ChatMessage> messages = new ArrayList<>(createMessageRequests.size());
+        for (CreateMessageRequest createMessageRequest : createMessageRequests) {
+            ChatMessage message = chatMessageMapper.toEntity(createMessageRequest);
+            message.setChatSession(chatSession);
+            message.setContextHash(contextBlobStore.save(createMessageRequest.getRetrievedContext()));
+            messages.add(message);
+        }
+
+        // Flushed as JDBC batches at commit (hibernate.jdbc.batch_size)
+        List<ChatMessageDTO> saved = chatMessageMapper.toDtoList(messageRepository.saveAll(messages));
+        for (int i = 0; i < saved.size(); i++) {
+            saved.get(i).setRetrievedContext(createMessageRequests.get(i).getRetrievedContext());
+        }
+        return saved;
+    }
+
+    public Flux<String> streamMessage(UUID sessionId, CreateMessageRequest createMessageRequest) {
+        log.info("Streaming reply for session: {}", sessionId);
+
+        String retrievedContext = retrieveContext(createMessageRequest);
+        saveMessage(sessionId, createMessageRequest.getSender(), createMessageRequest.getContent(), retrievedContext);
+
+        String context = join(retrievedContext, contextWindow.buildContext(sessionId, partitionBound(sessionId)));
+
+        // Tokens go straight to the client; the assembled reply is persisted once the stream completes
+        StringBuilder reply = new StringBuilder();
+        return aiService.streamResponse(createMessageRequest.getContent(), context)
+                .doOnNext(reply::append)
+                .concatWith(Mono.<String>fromRunnable(() -> saveMessage(sessionId, AI_SENDER, reply.toString(), retrievedContext))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    // Client-supplied context wins; otherwise retrieve it from the corpus
+    private String retrieveContext(CreateMessageRequest createMessageRequest) {
+        if (createMessageRequest.getRetrievedContext() != null) {
+            return createMessageRequest.getRetrievedContext();
+        }
+        return retrievalService.retrieveContext(createMessageRequest.getContent());
+    }
+
+    private static String join(String retrievedContext, String conversationContext) {
+        return retrievedContext == null ? conversationContext : retrievedContext + "\n\n" + conversationContext;
+    }
+
+    /**
+     * Stores a single message. With write-behind enabled it is acknowledged once appended to the
+     * Redis log and committed later by the flusher; otherwise, or if Redis is down, it is inserted directly.
+     */
+    private ChatMessageDTO saveMessage(UUID sessionId, String sender, String content, String retrievedContext) {
+        restoreIfArchived(sessionId);
+        ChatSession chatSession = chatSessionService.getReference(sessionId);
+
+        if (writeBuffer.isEnabled()) {
+            ChatMessageDTO buffered = writeBuffer.append(sessionId, sender, content, retrievedContext);
+            if (buffered != null) {
+                return buffered;
+            }
+        }
+
+        ChatMessage message = new ChatMessage();
+        message.setChatSession(chatSession);
+        message.setSender(sender);
+        message.setContent(content);
+        message.setContextHash(contextBlobStore.save(retrievedContext));
+        ChatMessageDTO saved = chatMessageMapper.toDto(messageRepository.save(message));
+        saved.setRetrievedContext(retrievedContext);
+        return saved;
+    }
+
+    /**
+     * Looks up a retrieved context by the hash listed with its messages. Contexts are shared and
+     * immutable, so the session only scopes the request. A context whose message still waits in the
+     * write-behind log is served from there until the flusher stores it.
+     */
+    public String getRetrievedContext(UUID sessionId, UUID contextHash) {
+        chatSessionService.getSessionById(sessionId);
+        String context = contextBlobStore.find(contextHash);
+        if (context == null) {
+            context = writeBuffer.pendingContext(sessionId, contextHash);
+        }
+        if (context == null) {
+            // Flushed between the two reads
+            context = contextBlobStore.find(contextHash);
+        }
+        if (context == null) {
+            throw new ResourceNotFoundException("No retrieved context found: " + contextHash);
+        }
+        return context;
     }
 
     @Transactional(readOnly = true)
     public List<ChatMessageDTO> getSessionMessages(UUID sessionId) {
         log.info("Retrieving messages for session: {}", sessionId);
 
-        if (!chatSessionService.sessionExists(sessionId)) {
-            throw new ResourceNotFoundException("Session not found with id: " + sessionId);
+        ChatSessionDTO session = chatSessionService.getSessionById(sessionId);
+        Instant since = partitionBound(session);
+
+        // Pending first: a message committed in between then shows up in both and is dropped by the merge
+        List<ChatMessageDTO> pending = writeBuffer.pending(sessionId);
+        List<ChatMessageDTO> stored = messageRepository.findDtosBySessionId(sessionId, since);
+        List<ChatMessageDTO> messages = pending.isEmpty() ? stored : merge(stored, pending, MessageWriteBuffer.ORDER, Integer.MAX_VALUE);
+
+        // Archived messages predate everything still in the table
+        List<ChatMessageDTO> archived = archivedMessages(session);
+        if (archived.isEmpty()) {
+            return contextBlobStore.inline(messages);
         }
+        List<ChatMessageDTO> all = new ArrayList<>(archived.size() + messages.size());
+        all.addAll(archived);
+        all.addAll(messages);
+        return contextBlobStore.inline(all);
+    }
+
+    /**
+     * Writes every message of the session to the output as it is read from the database cursor,
+     * so memory use does not depend on the size of the session.
+     */
+    @Transactional(readOnly = true)
+    public void writeTranscript(UUID sessionId, ExportFormat format, OutputStream out) throws IOException {
+        log.info("Exporting messages for session: {}", sessionId);
+
+        ChatSessionDTO session = chatSessionService.getSessionById(sessionId);
+        Instant since = partitionBound(session);
+        List<ChatMessageDTO> pending = writeBuffer.pending(sessionId);
+        try (Stream<ChatMessageDTO> messages = messageRepository.streamDtosBySessionId(sessionId, since);
+             SequenceWriter writer = format == ExportFormat.JSON
+                     ? objectMapper.writer().writeValuesAsArray(out)
+                     : objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+
+            for (ChatMessageDTO message : archivedMessages(session)) {
+                writer.write(contextBlobStore.inline(message));
+            }
 
-        return messageRepository.findByChatSessionIdOrderByCreatedAtAsc(sessionId)
-                .stream()
-                .map(chatMessageMapper::toDto)
-                .collect(Collectors.toList());
+            // Buffered messages are interleaved in order; one already committed compares equal and is skipped
+            int next = 0;
+            Iterator<ChatMessageDTO> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                ChatMessageDTO message = iterator.next();
+                int order;
+                while (next < pending.size() && (order = MessageWriteBuffer.ORDER.compare(pending.get(next), message)) <= 0) {
+                    if (order < 0) {
+                        writer.write(contextBlobStore.inline(pending.get(next)));
+                    }
+                    next++;
+                }
+                writer.write(contextBlobStore.inline(message));
+            }
+            for (; next < pending.size(); next++) {
+                writer.write(contextBlobStore.inline(pending.get(next)));
+            }
+        }
     }
 
     @Transactional(readOnly = true)
     public Page<ChatMessageDTO> getSessionMessagesPaginated(UUID sessionId, Pageable pageable) {
-        if (!chatSessionService.sessionExists(sessionId)) {
-            throw new ResourceNotFoundException("Session not found with id: " + sessionId);
+        ChatSessionDTO session = chatSessionService.getSessionById(sessionId);
+        Instant since = partitionBound(session);
+
+        List<ChatMessageDTO> pending = writeBuffer.pending(sessionId);
+        List<ChatMessageDTO> archived = archivedMessages(session);
+        if (pending.isEmpty() && archived.isEmpty()) {
+            return contextBlobStore.inline(messageRepository.findDtosBySessionId(sessionId, since, pageable));
+        }
+
+        // Newest first, so buffered messages take the leading offsets and stored ones shift down by their count
+        List<ChatMessageDTO> newestPending = pending.reversed();
+        int fromPending = (int) Math.min(Math.max(newestPending.size() - pageable.getOffset(), 0), pageable.getPageSize());
+        List<ChatMessageDTO> content = new ArrayList<>(pageable.getPageSize());
+        if (fromPending > 0) {
+            content.addAll(newestPending.subList((int) pageable.getOffset(), (int) pageable.getOffset() + fromPending));
+        }
+
+        Set<UUID> pendingIds = new HashSet<>();
+        pending.forEach(message -> pendingIds.add(message.getId()));
+        Pageable storedPage = new OffsetPageRequest(Math.max(pageable.getOffset() - newestPending.size(), 0),
+                pageable.getPageSize(), pageable.getSort());
+        Page<ChatMessageDTO> stored = messageRepository.findDtosBySessionId(sessionId, since, storedPage);
+        for (ChatMessageDTO message : stored.getContent()) {
+            if (content.size() == pageable.getPageSize()) {
+                break;
+            }
+            if (!pendingIds.contains(message.getId())) {
+                content.add(message);
+            }
+        }
+
+        // Archived messages are the oldest, so they fill the pages after the last stored one
+        List<ChatMessageDTO> newestArchived = archived.reversed();
+        long fromArchived = pageable.getOffset() + content.size() - newestPending.size() - stored.getTotalElements();
+        for (int i = (int) Math.max(fromArchived, 0); i < newestArchived.size() && content.size() < pageable.getPageSize(); i++) {
+            content.add(newestArchived.get(i));
+        }
+        return new PageImpl<>(contextBlobStore.inline(content), pageable, stored.getTotalElements() + pending.size() + archived.size());
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<ChatMessageDTO> getSessionMessagesByCursor(UUID sessionId, PageCursor cursor, int pageSize) {
+        ChatSessionDTO session = chatSessionService.getSessionById(sessionId);
+        Instant since = partitionBound(session);
+
+        List<ChatMessageDTO> pending = writeBuffer.pending(sessionId);
+        List<ChatMessageDTO> archived = archivedMessages(session);
+        Pageable pageable = Pageable.ofSize(pageSize);
+        Slice<ChatMessageDTO> stored = cursor == null
+                ? messageRepository.findFirstDtosBySessionId(sessionId, since, pageable)
+                : messageRepository.findDtosBySessionIdBefore(sessionId, since, cursor.createdAt(), cursor.id(), pageable);
+        if (pending.isEmpty() && archived.isEmpty()) {
+            return contextBlobStore.inline(stored);
+        }
+
+        ChatMessageDTO position = cursor == null ? null
+                : new ChatMessageDTO(cursor.id(), sessionId, null, null, null, cursor.createdAt());
+        List<ChatMessageDTO> before = pending.reversed().stream()
+                .filter(message -> position == null || MessageWriteBuffer.ORDER.compare(message, position) < 0)
+                .toList();
+        List<ChatMessageDTO> merged = merge(stored.getContent(), before, MessageWriteBuffer.ORDER.reversed(), pageSize + 1);
+        boolean hasNext = stored.hasNext() || merged.size() > pageSize;
+        if (!hasNext && !archived.isEmpty()) {
+            // Past the oldest stored message come the archived ones
+            for (ChatMessageDTO message : archived.reversed()) {
+                if (merged.size() > pageSize) {
+                    break;
+                }
+                if (position == null || MessageWriteBuffer.ORDER.compare(message, position) < 0) {
+                    merged.add(message);
+                }
+            }
+            hasNext = merged.size() > pageSize;
+        }
+        return new SliceImpl<>(contextBlobStore.inline(merged.subList(0, Math.min(merged.size(), pageSize))), pageable, hasNext);
+    }
+
+    /**
+     * Earliest timestamp a message of the session can carry, from the cached session. Bounds every
+     * message query so partitions older than the session are pruned.
+     */
+    private Instant partitionBound(UUID sessionId) {
+        return partitionBound(chatSessionService.getSessionById(sessionId));
+    }
+
+    private static Instant partitionBound(ChatSessionDTO session) {
+        return session.getCreatedAt() == null ? Instant.EPOCH : session.getCreatedAt().minus(CLOCK_SKEW);
+    }
+
+    private List<ChatMessageDTO> archivedMessages(ChatSessionDTO session) {
+        return session.getArchivedAt() == null ? List.of() : messageArchive.read(session.getId());
+    }
+
+    /**
+     * A session written to again leaves the cold tier, so everything downstream (context window,
+     * pagination) sees one table. A failed restore is retried on the next write; reads still merge the archive.
+     */
+    private void restoreIfArchived(UUID sessionId) {
+        if (chatSessionService.getSessionById(sessionId).getArchivedAt() == null) {
+            return;
+        }
+        try {
+            messageArchive.restore(sessionId);
+        } catch (DataAccessException | UncheckedIOException | IllegalStateException e) {
+            log.warn("Could not restore archived messages of session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    /**
+     * Merges two lists sorted by {@code order}, keeping one copy of a message present in both.
+     */
+    private static List<ChatMessageDTO> merge(List<ChatMessageDTO> stored, List<ChatMessageDTO> pending,
+                                              Comparator<ChatMessageDTO> order, int limit) {
+        List<ChatMessageDTO> merged = new ArrayList<>(Math.min(stored.size() + pending.size(), limit));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < stored.size() || j < pending.size())) {
+            if (j == pending.size()) {
+                merged.add(stored.get(i++));
+            } else if (i == stored.size()) {
+                merged.add(pending.get(j++));
+            } else {
+                int cmp = order.compare(stored.get(i), pending.get(j));
+                if (cmp == 0) {
+                    j++;
+                }
+                merged.add(cmp <= 0 ? stored.get(i++) : pending.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    // Offset that need not be a multiple of the page size, for pages shifted by buffered messages
+    private static final class OffsetPageRequest extends AbstractPageRequest {
+
+        private final long offset;
+        private final Sort sort;
+
+        OffsetPageRequest(long offset, int size, Sort sort) {
+            super(0, size);
+            this.offset = offset;
+            this.sort = sort;
         }
 
-        return messageRepository.findByChatSessionId(sessionId, pageable)
-                .map(chatMessageMapper::toDto);
+        @Override
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public Sort getSort() {
+            return sort;
+        }
+
+        @Override
+        public Pageable next() {
+            return new OffsetPageRequest(offset + getPageSize(), getPageSize(), sort);
+        }
+
+        @Override
+        public Pageable previous() {
+            return new OffsetPageRequest(Math.max(offset - getPageSize(), 0), getPageSize(), sort);
+        }
+
+        @Override
+        public Pageable first() {
+            return new OffsetPageRequest(0, getPageSize(), sort);
+        }
+
+        @Override
+        public Pageable withPage(int pageNumber) {
+            return new OffsetPageRequest((long) pageNumber * getPageSize(), getPageSize(), sort);
+        }
     }
 
 }
@@ -2,20 +2,22 @@ package com.spring.ragchatservice.service;
 
 import com.spring.ragchatservice.dto.ChatSessionDTO;
 import com.spring.ragchatservice.dto.CreateSessionRequest;
+import com.spring.ragchatservice.dto.PageCursor;
 import com.spring.ragchatservice.exception.ResourceNotFoundException;
 import com.spring.ragchatservice.mapper.ChatSessionMapper;
 import com.spring.ragchatservice.model.ChatSession;
 import com.spring.ragchatservice.repository.ChatSessionRepository;
+import com.spring.ragchatservice.service.cache.SessionCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +26,7 @@ public class ChatSessionService {
 
     private final ChatSessionRepository chatSessionRepository;
     private final ChatSessionMapper chatSessionMapper;
+    private final SessionCache sessionCache;
 
     @Transactional
     public ChatSessionDTO createChatSession(CreateSessionRequest createSessionRequest) {
@@ -36,29 +39,35 @@ public class ChatSessionService {
     @Transactional(readOnly = true)
     public List<ChatSessionDTO> getUserSessions(String userId) {
         log.info("Retrieving sessions for user: {}", userId);
-        return chatSessionRepository.findByUserIdOrderByUpdatedAtDesc(userId)
-                .stream()
-                .map(chatSessionMapper::toDto)
-                .collect(Collectors.toList());
+        return chatSessionRepository.findDtosByUserId(userId);
     }
 
     @Transactional(readOnly = true)
     public Page<ChatSessionDTO> getPaginatedUserSessions(String userId, Pageable pageable) {
         log.info("Retrieving sessions for user: {}", userId);
-        return chatSessionRepository.findByUserId(userId, pageable)
-                .map(chatSessionMapper::toDto);
+        return chatSessionRepository.findDtosByUserId(userId, pageable);
     }
 
     @Transactional(readOnly = true)
+    public Slice<ChatSessionDTO> getUserSessionsByCursor(String userId, PageCursor cursor, int pageSize) {
+        log.info("Retrieving sessions for user: {}", userId);
+        Pageable pageable = Pageable.ofSize(pageSize);
+        return cursor == null
+                ? chatSessionRepository.findFirstDtosByUserId(userId, pageable)
+                : chatSessionRepository.findDtosByUserIdBefore(userId, cursor.createdAt(), cursor.id(), pageable);
+    }
+
+    // Served from the session cache; only a miss touches the database
     public ChatSessionDTO getSessionById(UUID chatSessionId) {
-        ChatSession session = chatSessionRepository.findById(chatSessionId)
-                .orElseThrow(() -> new ResourceNotFoundException("Session not found with id: " + chatSessionId));
-        return chatSessionMapper.toDto(session);
+        ChatSessionDTO session = getCachedSession(chatSessionId);
+        if (session == null) {
+            throw new ResourceNotFoundException("Session not found with id: " + chatSessionId);
+        }
+        return session;
     }
 
-    @Transactional(readOnly = true)
     public boolean sessionExists(UUID chatSessionId) {
-        return chatSessionRepository.existsById(chatSessionId);
+        return getCachedSession(chatSessionId) != null;
     }
 
     @Transactional(readOnly = true)
@@ -67,6 +76,21 @@ public class ChatSessionService {
                 .orElseThrow(() -> new ResourceNotFoundException("Session not found with id: " + chatSessionId));
     }
 
+    /**
+     * Returns an unloaded reference to an existing session, for use as a message's association.
+     * Existence is checked against the session cache, so the common case costs no query.
+     */
+    public ChatSession getReference(UUID chatSessionId) {
+        if (!sessionExists(chatSessionId)) {
+            throw new ResourceNotFoundException("Session not found with id: " + chatSessionId);
+        }
+        return chatSessionRepository.getReferenceById(chatSessionId);
+    }
+
+    private ChatSessionDTO getCachedSession(UUID chatSessionId) {
+        return sessionCache.get(chatSessionId, () -> chatSessionRepository.findDtoById(chatSessionId));
+    }
+
     @Transactional
     public ChatSessionDTO updateSessionTitle(UUID sessionId, String newTitle) {
         log.info("Updating session title for session: {}", sessionId);
@@ -75,6 +99,7 @@ public class ChatSessionService {
 
         session.setTitle(newTitle);
         ChatSession updatedSession = chatSessionRepository.save(session);
+        sessionCache.evict(sessionId);
         return chatSessionMapper.toDto(updatedSession);
     }
 
@@ -87,6 +112,7 @@ public class ChatSessionService {
 
         session.setFavorite(!session.isFavorite());
         ChatSession updatedSession = chatSessionRepository.save(session);
+        sessionCache.evict(sessionId);
         return chatSessionMapper.toDto(updatedSession);
     }
 
@@ -94,18 +120,15 @@ public class ChatSessionService {
     public void deleteSession(UUID sessionId) {
         log.info("Deleting session: {}", sessionId);
 
-        if (!chatSessionRepository.existsById(sessionId)) {
+        if (chatSessionRepository.deleteSessionById(sessionId) == 0) {
             throw new ResourceNotFoundException("Session not found with id: " + sessionId);
         }
-        chatSessionRepository.deleteById(sessionId);
+        sessionCache.evict(sessionId);
     }
 
     @Transactional(readOnly = true)
     public List<ChatSessionDTO> getFavoriteSessions(String userId) {
-        return chatSessionRepository.findByUserIdAndFavoriteOrderByUpdatedAtDesc(userId, true)
-                .stream()
-                .map(chatSessionMapper::toDto)
-                .collect(Collectors.toList());
+        return chatSessionRepository.findDtosByUserIdAndFavorite(userId, true);
     }
 
 
@@ -1,5 +1,9 @@
 package com.spring.ragchatservice.service.ai;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 public interface AIService {
 
     /**
@@ -9,4 +13,24 @@ public interface AIService {
      * @return AI-generated text
      */
     String generateResponse(String prompt, String context);
+
+    /**
+     * Generate AI response without blocking the caller. Backends with a non-blocking client should
+     * override this; the default runs {@link #generateResponse} on the bounded elastic scheduler.
+     * @param prompt The user input
+     * @param context The conversation context
+     * @return AI-generated text, emitted once
+     */
+    default Mono<String> generate(String prompt, String context) {
+        return Mono.fromCallable(() -> generateResponse(prompt, context))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Stream the AI response as it is generated, one token chunk per element.
+     * @param prompt The user input
+     * @param context The conversation context
+     * @return AI-generated text chunks, in order
+     */
+    Flux<String> streamResponse(String prompt, String context);
 }
@@ -0,0 +1,46 @@
+package com.spring.ragchatservice.service.ai;
+
+import com.spring.ragchatservice.service.cache.SemanticResponseCache;
+import reactor.core.publisher.Flux;
+
+/**
+ * {@link AIService} decorator that answers repeated or near-identical questions from a
+ * {@link SemanticResponseCache} instead of calling the model again.
+ */
+public class CachingAIService implements AIService {
+
+    private final AIService delegate;
+    private final SemanticResponseCache cache;
+
+    public CachingAIService(AIService delegate, SemanticResponseCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public String generateResponse(String prompt, String context) {
+        SemanticResponseCache.Key key = cache.key(prompt, context);
+        String cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        String response = delegate.generateResponse(prompt, context);
+        cache.put(key, response);
+        return response;
+    }
+
+    @Override
+    public Flux<String> streamResponse(String prompt, String context) {
+        return Flux.defer(() -> {
+            SemanticResponseCache.Key key = cache.key(prompt, context);
+            String cached = cache.get(key);
+            if (cached != null) {
+                return Flux.just(cached);
+            }
+            StringBuilder response = new StringBuilder();
+            return delegate.streamResponse(prompt, context)
+                    .doOnNext(response::append)
+                    .doOnComplete(() -> cache.put(key, response.toString()));
+        });
+    }
+}
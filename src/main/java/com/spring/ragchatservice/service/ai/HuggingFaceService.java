@@ -1,14 +1,25 @@
 package com.spring.ragchatservice.service.ai;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class HuggingFaceService implements AIService {
 
+    private static final ParameterizedTypeReference<ServerSentEvent<JsonNode>> TOKEN_EVENT =
+            new ParameterizedTypeReference<>() {};
+
     private final WebClient webClient;
 
     @Value("${huggingface.api.key}")
@@ -18,17 +29,42 @@ public class HuggingFaceService implements AIService {
 
     @Override
     public String generateResponse(String prompt, String context) {
+        return generate(prompt, context)
+                .block(); // wait for the response
+    }
+
+    @Override
+    public Mono<String> generate(String prompt, String context) {
 
         String input = (context != null ? context + "\n" : "") + prompt;
 
         return webClient.post()
                 .uri(apiUrl)
                 .header("Authorization", "Bearer " + apiKey)
-                .bodyValue("{\"inputs\": \"" + input + "\"}")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("inputs", input))
                 .retrieve()
-                .bodyToMono(String.class)
+                .bodyToMono(String.class);
+    }
 
-                .block(); // wait for the response
+    @Override
+    public Flux<String> streamResponse(String prompt, String context) {
+
+        String input = (context != null ? context + "\n" : "") + prompt;
+
+        // Text generation inference emits one SSE event per generated token
+        return webClient.post()
+                .uri(apiUrl)
+                .header("Authorization", "Bearer " + apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(Map.of("inputs", input, "stream", true))
+                .retrieve()
+                .bodyToFlux(TOKEN_EVENT)
+                .mapNotNull(ServerSentEvent::data)
+                .filter(data -> !data.path("token").path("special").asBoolean(false))
+                .map(data -> data.path("token").path("text").asText(""))
+                .filter(token -> !token.isEmpty());
     }
 
 }
@@ -0,0 +1,47 @@
+package com.spring.ragchatservice.service.ai;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Offline backend that answers after a configurable delay without calling any model. Used for
+ * local development and load tests, and as a last-resort route.
+ */
+@Service
+public class LocalStubAIService implements AIService {
+
+    private final Duration latency;
+    private final Duration tokenInterval;
+
+    public LocalStubAIService(@Value("${app.ai.stub.latency:200ms}") Duration latency,
+                              @Value("${app.ai.stub.token-interval:10ms}") Duration tokenInterval) {
+        this.latency = latency;
+        this.tokenInterval = tokenInterval;
+    }
+
+    @Override
+    public String generateResponse(String prompt, String context) {
+        return generate(prompt, context).block();
+    }
+
+    @Override
+    public Mono<String> generate(String prompt, String context) {
+        return Mono.delay(latency).map(tick -> reply(prompt));
+    }
+
+    @Override
+    public Flux<String> streamResponse(String prompt, String context) {
+        String[] words = reply(prompt).split("(?<= )");
+        return Flux.fromArray(words)
+                .delayElements(tokenInterval)
+                .delaySubscription(latency);
+    }
+
+    private static String reply(String prompt) {
+        return "This is a stub reply to: " + prompt;
+    }
+}
@@ -0,0 +1,102 @@
+package com.spring.ragchatservice.service.ai;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link AIService} decorator recording, per backend, {@code ai.generation} latency by mode and
+ * outcome, {@code ai.stream.first.token} latency, and {@code ai.response.tokens}. Stream tokens
+ * are counted as emitted; blocking replies are approximated by their whitespace-separated words.
+ */
+public class MeteredAIService implements AIService {
+
+    private final AIService delegate;
+    private final MeterRegistry meterRegistry;
+    private final String backend;
+    private final Timer firstToken;
+    private final DistributionSummary tokens;
+
+    public MeteredAIService(AIService delegate, MeterRegistry meterRegistry, String backend) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.backend = backend;
+        this.firstToken = Timer.builder("ai.stream.first.token")
+                .tag("backend", backend)
+                .register(meterRegistry);
+        this.tokens = DistributionSummary.builder("ai.response.tokens")
+                .tag("backend", backend)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String generateResponse(String prompt, String context) {
+        return generate(prompt, context).block();
+    }
+
+    @Override
+    public Mono<String> generate(String prompt, String context) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return delegate.generate(prompt, context)
+                    .doOnSuccess(response -> {
+                        stop(sample, "generate", "success");
+                        if (response != null) {
+                            tokens.record(countWords(response));
+                        }
+                    })
+                    .doOnError(e -> stop(sample, "generate", e.getClass().getSimpleName()))
+                    .doOnCancel(() -> stop(sample, "generate", "cancelled"));
+        });
+    }
+
+    @Override
+    public Flux<String> streamResponse(String prompt, String context) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            long start = System.nanoTime();
+            AtomicBoolean started = new AtomicBoolean();
+            AtomicInteger count = new AtomicInteger();
+            return delegate.streamResponse(prompt, context)
+                    .doOnNext(token -> {
+                        count.incrementAndGet();
+                        if (started.compareAndSet(false, true)) {
+                            firstToken.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        stop(sample, "stream", "success");
+                        tokens.record(count.get());
+                    })
+                    .doOnError(e -> stop(sample, "stream", e.getClass().getSimpleName()))
+                    .doOnCancel(() -> stop(sample, "stream", "cancelled"));
+        });
+    }
+
+    private void stop(Timer.Sample sample, String mode, String outcome) {
+        sample.stop(Timer.builder("ai.generation")
+                .tag("backend", backend)
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean whitespace = Character.isWhitespace(text.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        return words;
+    }
+}
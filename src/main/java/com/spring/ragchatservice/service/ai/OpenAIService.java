@@ -0,0 +1,49 @@
+package com.spring.ragchatservice.service.ai;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class OpenAIService implements AIService {
+
+    private final ChatModel chatModel;
+
+    @Override
+    public String generateResponse(String prompt, String context) {
+        return text(chatModel.call(toPrompt(prompt, context)));
+    }
+
+    @Override
+    public Flux<String> streamResponse(String prompt, String context) {
+        return chatModel.stream(toPrompt(prompt, context))
+                .map(OpenAIService::text)
+                .filter(token -> !token.isEmpty());
+    }
+
+    private static Prompt toPrompt(String prompt, String context) {
+        List<Message> messages = new ArrayList<>(2);
+        if (context != null) {
+            messages.add(new SystemMessage(context));
+        }
+        messages.add(new UserMessage(prompt));
+        return new Prompt(messages);
+    }
+
+    private static String text(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput().getText() == null) {
+            return "";
+        }
+        return response.getResult().getOutput().getText();
+    }
+}
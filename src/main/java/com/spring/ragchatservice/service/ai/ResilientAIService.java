@@ -0,0 +1,55 @@
+package com.spring.ragchatservice.service.ai;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * {@link AIService} decorator for one backend: calls time out, concurrency is capped by a
+ * bulkhead, and a circuit breaker fails fast while the backend is down, probing it again in the
+ * half-open state. Rejections surface as {@code CallNotPermittedException} or
+ * {@code BulkheadFullException}, which the router treats like any other backend failure.
+ */
+public class ResilientAIService implements AIService {
+
+    private final AIService delegate;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final Duration timeout;
+
+    /**
+     * @param timeout Longest a generation may take; for streams, the longest gap between tokens
+     */
+    public ResilientAIService(AIService delegate, CircuitBreaker circuitBreaker, Bulkhead bulkhead, Duration timeout) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String generateResponse(String prompt, String context) {
+        return generate(prompt, context).block();
+    }
+
+    @Override
+    public Mono<String> generate(String prompt, String context) {
+        return delegate.generate(prompt, context)
+                .timeout(timeout)
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+    }
+
+    @Override
+    public Flux<String> streamResponse(String prompt, String context) {
+        return delegate.streamResponse(prompt, context)
+                .timeout(timeout)
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+    }
+}
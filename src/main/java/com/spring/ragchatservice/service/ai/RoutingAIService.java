@@ -0,0 +1,244 @@
+package com.spring.ragchatservice.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * {@link AIService} that spreads generations over several backends. Each request goes to the
+ * backend with the best EWMA of latency and error rate, and a hedged copy goes to the runner-up
+ * once the primary passes its recent p95 latency (or fails, or answers empty). Whichever answers
+ * first wins and the other request is cancelled. Streams are hedged on time to first token. With
+ * a single backend there is no runner-up and nothing is hedged.
+ */
+@Slf4j
+public class RoutingAIService implements AIService {
+
+    private static final int MIN_SAMPLES_FOR_DEADLINE = 20;
+
+    private final List<Backend> backends;
+    private final boolean hedging;
+    private final Duration initialDeadline;
+    private final Duration minDeadline;
+    private final double exploreRatio;
+
+    /**
+     * @param backends        Backends by name, in order of preference until latencies are known
+     * @param alpha           EWMA smoothing factor for latency and error rate
+     * @param hedging         Whether to send hedged requests at all
+     * @param initialDeadline Hedge deadline used before a backend has enough latency samples
+     * @param minDeadline     Lower bound of the hedge deadline, so fast backends are not hedged on noise
+     * @param exploreRatio    Share of requests sent to a random backend to refresh its statistics
+     */
+    public RoutingAIService(Map<String, AIService> backends, double alpha, boolean hedging,
+                            Duration initialDeadline, Duration minDeadline, double exploreRatio) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one AI backend is required");
+        }
+        List<Backend> list = new ArrayList<>(backends.size());
+        backends.forEach((name, service) -> list.add(new Backend(name, service, new LatencyStats(alpha), new LatencyStats(alpha))));
+        this.backends = List.copyOf(list);
+        // Hedging a backend against itself only doubles the load on it once it is slow
+        this.hedging = hedging && this.backends.size() > 1;
+        if (hedging && !this.hedging) {
+            log.info("AI request hedging disabled: it needs at least two backends");
+        }
+        this.initialDeadline = initialDeadline;
+        this.minDeadline = minDeadline;
+        this.exploreRatio = exploreRatio;
+    }
+
+    @Override
+    public String generateResponse(String prompt, String context) {
+        return generate(prompt, context).block();
+    }
+
+    @Override
+    public Mono<String> generate(String prompt, String context) {
+        return Mono.defer(() -> {
+            List<Backend> ranked = rank(Backend::response);
+            Backend primary = ranked.get(0);
+            Mono<String> first = timed(primary, primary.response(), primary.service().generate(prompt, context));
+            if (!hedging) {
+                return first;
+            }
+
+            Backend secondary = ranked.get(1);
+            Sinks.Empty<Void> failed = Sinks.empty();
+            Mono<String> hedge = timed(secondary, secondary.response(), secondary.service().generate(prompt, context))
+                    .doOnSubscribe(subscription -> log.debug("Hedging AI request from {} to {}", primary.name(), secondary.name()));
+            return Mono.firstWithValue(
+                    first.doOnError(e -> failed.tryEmitEmpty())
+                            .switchIfEmpty(Mono.fromRunnable(failed::tryEmitEmpty)),
+                    hedge.delaySubscription(trigger(primary.response(), failed)));
+        });
+    }
+
+    @Override
+    public Flux<String> streamResponse(String prompt, String context) {
+        return Flux.defer(() -> {
+            List<Backend> ranked = rank(Backend::firstToken);
+            Backend primary = ranked.get(0);
+            Flux<String> first = timed(primary, primary.firstToken(), primary.service().streamResponse(prompt, context));
+            if (!hedging) {
+                return first;
+            }
+
+            Backend secondary = ranked.get(1);
+            Sinks.Empty<Void> failed = Sinks.empty();
+            Flux<String> hedge = timed(secondary, secondary.firstToken(), secondary.service().streamResponse(prompt, context))
+                    .doOnSubscribe(subscription -> log.debug("Hedging AI stream from {} to {}", primary.name(), secondary.name()));
+            return Flux.firstWithValue(
+                    first.doOnError(e -> failed.tryEmitEmpty())
+                            .switchIfEmpty(Mono.fromRunnable(failed::tryEmitEmpty)),
+                    hedge.delaySubscription(trigger(primary.firstToken(), failed)));
+        });
+    }
+
+    /**
+     * Fires when the primary passes its deadline, fails or completes without a value, whichever comes first.
+     */
+    private Mono<Void> trigger(LatencyStats primary, Sinks.Empty<Void> failed) {
+        return Mono.firstWithSignal(Mono.delay(deadline(primary)).then(), failed.asMono());
+    }
+
+    private Duration deadline(LatencyStats stats) {
+        if (stats.samples() < MIN_SAMPLES_FOR_DEADLINE) {
+            return initialDeadline;
+        }
+        Duration p95 = Duration.ofNanos(stats.p95Nanos());
+        return p95.compareTo(minDeadline) < 0 ? minDeadline : p95;
+    }
+
+    private List<Backend> rank(Function<Backend, LatencyStats> stats) {
+        List<Backend> ranked = new ArrayList<>(backends);
+        ranked.sort(Comparator.comparingDouble(backend -> stats.apply(backend).score()));
+        if (ranked.size() > 1 && ThreadLocalRandom.current().nextDouble() < exploreRatio) {
+            Collections.swap(ranked, 0, 1 + ThreadLocalRandom.current().nextInt(ranked.size() - 1));
+        }
+        return ranked;
+    }
+
+    private static Mono<String> timed(Backend backend, LatencyStats stats, Mono<String> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(response -> {
+                        // An empty answer is as useless to the caller as an error
+                        if (response == null) {
+                            stats.failure();
+                        } else {
+                            stats.success(System.nanoTime() - start);
+                        }
+                    })
+                    .doOnError(e -> {
+                        stats.failure();
+                        log.warn("AI backend {} failed: {}", backend.name(), e.getMessage());
+                    })
+                    // A cancelled loser was at least this slow
+                    .doOnCancel(() -> stats.censored(System.nanoTime() - start));
+        });
+    }
+
+    private static Flux<String> timed(Backend backend, LatencyStats stats, Flux<String> call) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean started = new AtomicBoolean();
+            return call
+                    .doOnNext(token -> {
+                        if (started.compareAndSet(false, true)) {
+                            stats.success(System.nanoTime() - start);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (!started.get()) {
+                            stats.failure();
+                        }
+                        log.warn("AI backend {} stream failed: {}", backend.name(), e.getMessage());
+                    })
+                    .doOnComplete(() -> {
+                        if (!started.get()) {
+                            stats.failure();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (!started.get()) {
+                            stats.censored(System.nanoTime() - start);
+                        }
+                    });
+        });
+    }
+
+    private record Backend(String name, AIService service, LatencyStats response, LatencyStats firstToken) {
+    }
+
+    /**
+     * Rolling latency and error statistics of one backend: EWMAs for ranking plus a window of
+     * recent latencies for the p95 hedge deadline.
+     */
+    static final class LatencyStats {
+
+        private static final int WINDOW = 256;
+        private static final int P95_REFRESH = 16;
+
+        private final double alpha;
+        private final long[] window = new long[WINDOW];
+        private int next;
+        private int samples;
+        private double latencyNanos;
+        private double errorRate;
+        private volatile long p95Nanos;
+
+        LatencyStats(double alpha) {
+            this.alpha = alpha;
+        }
+
+        synchronized void success(long nanos) {
+            errorRate *= 1 - alpha;
+            censored(nanos);
+        }
+
+        synchronized void failure() {
+            errorRate = errorRate * (1 - alpha) + alpha;
+        }
+
+        synchronized void censored(long nanos) {
+            latencyNanos = samples == 0 ? nanos : latencyNanos + alpha * (nanos - latencyNanos);
+            window[next] = nanos;
+            next = (next + 1) % WINDOW;
+            samples++;
+            if (samples % P95_REFRESH == 0 || samples == MIN_SAMPLES_FOR_DEADLINE) {
+                long[] recent = Arrays.copyOf(window, Math.min(samples, WINDOW));
+                Arrays.sort(recent);
+                p95Nanos = recent[(int) Math.ceil(recent.length * 0.95) - 1];
+            }
+        }
+
+        /**
+         * Expected latency per successful call; unmeasured backends score 0 so they get tried.
+         */
+        synchronized double score() {
+            return latencyNanos / Math.max(0.01, 1 - errorRate);
+        }
+
+        synchronized int samples() {
+            return samples;
+        }
+
+        long p95Nanos() {
+            return p95Nanos;
+        }
+    }
+}
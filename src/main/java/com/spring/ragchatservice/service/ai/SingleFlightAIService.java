@@ -0,0 +1,178 @@
+package com.spring.ragchatservice.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link AIService} decorator that collapses concurrent identical generations into one upstream
+ * call whose result is handed to every caller. With a {@link RedissonClient} the collapsing is
+ * cluster-wide: the node holding the flight lock calls upstream and publishes the response, and
+ * the others wait for it, falling back to their own call if it does not arrive in time.
+ */
+@Slf4j
+public class SingleFlightAIService implements AIService, AutoCloseable {
+
+    private static final String LOCK_PREFIX = "ai-flight:lock:";
+    private static final String RESULT_PREFIX = "ai-flight:result:";
+    private static final String RESULT_TOPIC = "ai-flight:results";
+
+    private final AIService delegate;
+    private final RedissonClient redissonClient;
+    private final Duration timeout;
+    private final Map<String, CompletableFuture<String>> flights = new ConcurrentHashMap<>();
+    private final Map<String, Flux<String>> streams = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<String>> remoteFlights = new ConcurrentHashMap<>();
+    private final RTopic results;
+    private final int listenerId;
+
+    /**
+     * @param redissonClient Client for cluster-wide coalescing, or null to coalesce per node only
+     * @param timeout        Longest a generation may take; bounds the lock lease and remote waits
+     */
+    public SingleFlightAIService(AIService delegate, RedissonClient redissonClient, Duration timeout) {
+        this.delegate = delegate;
+        this.redissonClient = redissonClient;
+        this.timeout = timeout;
+        if (redissonClient != null) {
+            this.results = redissonClient.getTopic(RESULT_TOPIC, StringCodec.INSTANCE);
+            this.listenerId = results.addListener(String.class, (channel, message) -> onResult(message));
+        } else {
+            this.results = null;
+            this.listenerId = 0;
+        }
+    }
+
+    @Override
+    public String generateResponse(String prompt, String context) {
+        String key = key(prompt, context);
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> leader = flights.putIfAbsent(key, flight);
+        if (leader != null) {
+            return await(leader);
+        }
+
+        try {
+            String response = redissonClient != null
+                    ? generateClustered(key, prompt, context)
+                    : delegate.generateResponse(prompt, context);
+            flight.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Concurrent identical streams on this node share one upstream stream; late subscribers are
+     * replayed the tokens they missed.
+     */
+    @Override
+    public Flux<String> streamResponse(String prompt, String context) {
+        String key = key(prompt, context);
+        return Flux.defer(() -> streams.computeIfAbsent(key, k -> delegate.streamResponse(prompt, context)
+                .doFinally(signal -> streams.remove(k))
+                .replay()
+                .refCount()));
+    }
+
+    @Override
+    public void close() {
+        if (results != null) {
+            results.removeListener(listenerId);
+        }
+    }
+
+    private String generateClustered(String key, String prompt, String context) {
+        CompletableFuture<String> remote = new CompletableFuture<>();
+        remoteFlights.put(key, remote);
+        try {
+            RLock lock = redissonClient.getLock(LOCK_PREFIX + key);
+            if (lock.tryLock(0, timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                try {
+                    String response = delegate.generateResponse(prompt, context);
+                    publish(key, response);
+                    return response;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            // Another node is generating; it may already have finished before we subscribed
+            String finished = resultBucket(key).get();
+            if (finished != null) {
+                return finished;
+            }
+            return remote.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | RedisException e) {
+            log.warn("Cluster single-flight unavailable for {}, calling upstream directly: {}", key, e.getMessage());
+            return delegate.generateResponse(prompt, context);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for AI response", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            remoteFlights.remove(key, remote);
+        }
+    }
+
+    private void publish(String key, String response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            resultBucket(key).set(response, timeout);
+            results.publish(key + '\n' + response);
+        } catch (RedisException e) {
+            log.warn("Failed to publish AI response for {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void onResult(String message) {
+        int separator = message.indexOf('\n');
+        CompletableFuture<String> remote = remoteFlights.get(message.substring(0, separator));
+        if (remote != null) {
+            remote.complete(message.substring(separator + 1));
+        }
+    }
+
+    private RBucket<String> resultBucket(String key) {
+        return redissonClient.getBucket(RESULT_PREFIX + key, StringCodec.INSTANCE);
+    }
+
+    private static String await(CompletableFuture<String> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static String key(String prompt, String context) {
+        String pair = prompt + '\u0000' + (context == null ? "" : context);
+        return UUID.nameUUIDFromBytes(pair.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}
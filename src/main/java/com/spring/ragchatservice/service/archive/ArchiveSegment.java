@@ -0,0 +1,296 @@
+package com.spring.ragchatservice.service.archive;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.service.context.ContextBlobStore;
+import com.spring.ragchatservice.service.retrieval.SegmentFileWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable archive file holding the messages of many sessions. After a 32-byte little-endian
+ * header come one block per session, located through the archived_sessions index and read on its
+ * own with positional reads, so neither the file nor the offsets are limited to 2 GB:
+ * <ul>
+ *     <li>{@code [count, columns]} then {@code [rawLength, compressedLength]} per column</li>
+ *     <li>the Deflate-compressed columns, in order: ids, created_at (delta-encoded micros),
+ *     sender, content (length-prefixed UTF-8, -1 for null), context_hash (a presence byte, then
+ *     the 16 bytes when present)</li>
+ * </ul>
+ * Storing each field as its own column puts like data together: ids and timestamps shrink to a
+ * few bytes per message. Version 1 files held the retrieved context text in the last column; they
+ * are still read, and restoring them stores the context in context_blobs.
+ */
+final class ArchiveSegment implements Closeable {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x4352414D; // "MARC"
+    private static final int VERSION = 2;
+    private static final int VERSION_INLINE_CONTEXT = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int COLUMNS = 5;
+    private static final int BLOCK_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final String name;
+    private final FileChannel channel;
+    private final int version;
+
+    private ArchiveSegment(String name, FileChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, name, 0, 2 * Integer.BYTES);
+        int magic = header.getInt();
+        int fileVersion = header.getInt();
+        if (magic != MAGIC || (fileVersion != VERSION && fileVersion != VERSION_INLINE_CONTEXT)) {
+            throw new IllegalStateException("Not a version " + VERSION + " message archive: " + name);
+        }
+        this.name = name;
+        this.channel = channel;
+        this.version = fileVersion;
+    }
+
+    static ArchiveSegment open(Path directory, String name) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(name + SUFFIX), StandardOpenOption.READ);
+        try {
+            return new ArchiveSegment(name, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts segment {@code name}; its blocks are appended one session at a time.
+     */
+    static Writer create(Path directory, String name) throws IOException {
+        return new Writer(new SegmentFileWriter(directory.resolve(name + SUFFIX)));
+    }
+
+    String name() {
+        return name;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return The messages of the block at {@code offset}, oldest first
+     */
+    List<ChatMessageDTO> read(UUID sessionId, long offset) throws IOException {
+        ByteBuffer header = readFully(channel, name, offset, BLOCK_HEADER_BYTES);
+        int count = header.getInt();
+        int columns = header.getInt();
+        ByteBuffer lengths = readFully(channel, name, offset + BLOCK_HEADER_BYTES, columns * 2 * Integer.BYTES);
+        int[] rawLengths = new int[columns];
+        int[] compressedLengths = new int[columns];
+        long compressedTotal = 0;
+        for (int i = 0; i < columns; i++) {
+            rawLengths[i] = lengths.getInt();
+            compressedLengths[i] = lengths.getInt();
+            compressedTotal += compressedLengths[i];
+        }
+        ByteBuffer compressed = readFully(channel, name, offset + BLOCK_HEADER_BYTES + lengths.capacity(), Math.toIntExact(compressedTotal));
+
+        ByteBuffer[] raw = new ByteBuffer[columns];
+        Inflater inflater = new Inflater();
+        try {
+            int data = 0;
+            for (int i = 0; i < columns; i++) {
+                raw[i] = ByteBuffer.wrap(inflate(inflater, compressed.slice(data, compressedLengths[i]), rawLengths[i]));
+                data += compressedLengths[i];
+            }
+        } finally {
+            inflater.end();
+        }
+
+        List<ChatMessageDTO> messages = new ArrayList<>(count);
+        long micros = 0;
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(raw[0].getLong(), raw[0].getLong());
+            micros += raw[1].getLong();
+            Instant createdAt = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+            String sender = readString(raw[2]);
+            String content = readString(raw[3]);
+            if (version == VERSION_INLINE_CONTEXT) {
+                String context = readString(raw[4]);
+                messages.add(new ChatMessageDTO(id, sessionId, sender, content, context,
+                        context == null ? null : ContextBlobStore.hash(context), createdAt));
+            } else {
+                UUID contextHash = raw[4].get() == 0 ? null : new UUID(raw[4].getLong(), raw[4].getLong());
+                messages.add(new ChatMessageDTO(id, sessionId, sender, content, contextHash, createdAt));
+            }
+        }
+        return messages;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, String name, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated message archive " + name);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static byte[] compress(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] inflate(Inflater inflater, ByteBuffer compressed, int rawLength) {
+        inflater.reset();
+        inflater.setInput(compressed);
+        byte[] raw = new byte[rawLength];
+        try {
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, rawLength - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != rawLength) {
+                throw new IllegalStateException("Truncated column in message archive " + name);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt column in message archive " + name, e);
+        }
+        return raw;
+    }
+
+    record Block(long offset, int length, int count) {
+    }
+
+    /**
+     * Appends blocks to a new segment. Only the block being written is held in memory, as one
+     * column buffer per field; nothing is visible under the segment's name before {@link #commit()}.
+     */
+    static final class Writer implements Closeable {
+
+        private final SegmentFileWriter out;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[COLUMNS];
+        private final DataOutputStream[] columns = new DataOutputStream[COLUMNS];
+        private int sessions;
+        private int count;
+        private long previousMicros;
+
+        private Writer(SegmentFileWriter out) throws IOException {
+            this.out = out;
+            for (int i = 0; i < COLUMNS; i++) {
+                buffers[i] = new ByteArrayOutputStream();
+                columns[i] = new DataOutputStream(buffers[i]);
+            }
+            out.putInt(MAGIC).putInt(VERSION).putLong(0)
+                    .putLong(0).putLong(0);
+        }
+
+        /**
+         * Adds a message to the current block; a session's messages go in (createdAt, id) order.
+         */
+        void add(ChatMessageDTO message) throws IOException {
+            columns[0].writeLong(message.getId().getMostSignificantBits());
+            columns[0].writeLong(message.getId().getLeastSignificantBits());
+            long micros = Math.addExact(Math.multiplyExact(message.getCreatedAt().getEpochSecond(), 1_000_000L),
+                    message.getCreatedAt().getNano() / 1_000L);
+            columns[1].writeLong(micros - previousMicros);
+            previousMicros = micros;
+            writeString(columns[2], message.getSender());
+            writeString(columns[3], message.getContent());
+            columns[4].writeBoolean(message.getContextHash() != null);
+            if (message.getContextHash() != null) {
+                columns[4].writeLong(message.getContextHash().getMostSignificantBits());
+                columns[4].writeLong(message.getContextHash().getLeastSignificantBits());
+            }
+            count++;
+        }
+
+        /**
+         * Compresses and writes the messages added since the last block as one session's block.
+         */
+        Block finishBlock() throws IOException {
+            long offset = out.position();
+            out.putInt(count).putInt(COLUMNS);
+            byte[][] compressed = new byte[COLUMNS][];
+            for (int i = 0; i < COLUMNS; i++) {
+                columns[i].flush();
+                compressed[i] = compress(deflater, buffers[i].toByteArray());
+                out.putInt(buffers[i].size()).putInt(compressed[i].length);
+                buffers[i].reset();
+            }
+            for (byte[] column : compressed) {
+                out.putBytes(column);
+            }
+            Block block = new Block(offset, Math.toIntExact(out.position() - offset), count);
+            sessions++;
+            count = 0;
+            previousMicros = 0;
+            return block;
+        }
+
+        /**
+         * @return Bytes written so far
+         */
+        long size() {
+            return out.position();
+        }
+
+        void commit() throws IOException {
+            // The session count and the reserved int after it, little-endian
+            out.patchLong(2 * Integer.BYTES, sessions);
+            out.commit();
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.spring.ragchatservice.service.archive;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.repository.ChatMessageBulkInserter;
+import com.spring.ragchatservice.service.context.ContextBlobStore;
+import com.spring.ragchatservice.service.cache.SessionCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read side of the cold message tier. Messages of a session archived by {@link MessageArchiver}
+ * are served straight from its block of the segment file; a session that is written to again is
+ * restored to the hot table first, so it behaves like any other from then on.
+ */
+@Component
+@Slf4j
+public class MessageArchive {
+
+    private static final String FIND_BLOCK =
+            "SELECT segment, block_offset FROM archived_sessions WHERE session_id = ?";
+    private static final String CLAIM_BLOCK =
+            "DELETE FROM archived_sessions WHERE session_id = ? RETURNING segment, block_offset";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatMessageBulkInserter inserter;
+    private final ContextBlobStore contextBlobStore;
+    private final SessionCache sessionCache;
+    private final Path directory;
+
+    public MessageArchive(JdbcTemplate jdbcTemplate,
+                          ChatMessageBulkInserter inserter,
+                          ContextBlobStore contextBlobStore,
+                          SessionCache sessionCache,
+                          @Value("${app.messages.archive.dir:data/message-archive}") Path directory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.inserter = inserter;
+        this.contextBlobStore = contextBlobStore;
+        this.sessionCache = sessionCache;
+        this.directory = directory;
+    }
+
+    /**
+     * @return The archived messages of the session, oldest first; empty if it has none
+     */
+    public List<ChatMessageDTO> read(UUID sessionId) {
+        return jdbcTemplate.query(FIND_BLOCK, rs -> rs.next()
+                ? readBlock(rs.getString(1), sessionId, rs.getLong(2))
+                : List.of(), sessionId);
+    }
+
+    /**
+     * Moves the session's archived messages back into chat_messages. Safe to call concurrently:
+     * only the caller that removes the index row restores.
+     * @return The number of messages restored
+     */
+    @Transactional
+    public int restore(UUID sessionId) {
+        List<ChatMessageDTO> messages = jdbcTemplate.query(CLAIM_BLOCK, rs -> rs.next()
+                ? readBlock(rs.getString(1), sessionId, rs.getLong(2))
+                : List.<ChatMessageDTO>of(), sessionId);
+        // Only older segments still carry context text rather than a reference
+        contextBlobStore.saveAll(messages);
+        for (int from = 0; from < messages.size(); from += ChatMessageBulkInserter.MAX_ROWS) {
+            inserter.insert(messages.subList(from, Math.min(messages.size(), from + ChatMessageBulkInserter.MAX_ROWS)));
+        }
+        jdbcTemplate.update("UPDATE chat_sessions SET archived_at = NULL WHERE id = ?", sessionId);
+        sessionCache.evict(sessionId);
+        if (!messages.isEmpty()) {
+            log.info("Restored {} archived messages of session {}", messages.size(), sessionId);
+        }
+        return messages.size();
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    // Archived sessions are read rarely, so nothing is kept open between reads
+    private List<ChatMessageDTO> readBlock(String segment, UUID sessionId, long offset) {
+        try (ArchiveSegment file = ArchiveSegment.open(directory, segment)) {
+            return file.read(sessionId, offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read message archive " + segment, e);
+        }
+    }
+}
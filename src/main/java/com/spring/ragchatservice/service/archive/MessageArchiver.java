@@ -0,0 +1,252 @@
+package com.spring.ragchatservice.service.archive;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.service.ChatMessageService;
+import com.spring.ragchatservice.service.cache.SessionCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Moves the messages of sessions that have gone quiet out of Postgres into {@link ArchiveSegment}
+ * files. Each run streams a batch of sessions, one page of messages at a time, into a new segment
+ * of bounded size, then in one transaction indexes them in archived_sessions and deletes the
+ * archived rows, so a message is always in exactly one tier. Runs on one node at a time, guarded
+ * by a Postgres advisory lock; the archive directory must be shared by every node that serves
+ * reads.
+ */
+@Component
+@Slf4j
+public class MessageArchiver {
+
+    // Segments younger than this may still be waiting for their index rows to commit
+    private static final Duration ORPHAN_GRACE = Duration.ofHours(1);
+    private static final int PAGE_SIZE = 1_000;
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private static final String FIND_CANDIDATES =
+            "SELECT s.id, s.created_at FROM chat_sessions s " +
+            "WHERE s.archived_at IS NULL AND s.updated_at < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM chat_messages m WHERE m.session_id = s.id AND m.created_at >= ?) " +
+            "AND EXISTS (SELECT 1 FROM chat_messages m WHERE m.session_id = s.id AND m.created_at >= s.created_at - ?::interval) " +
+            "LIMIT ?";
+    private static final String FIND_MESSAGES =
+            "SELECT id, sender, content, context_hash, created_at FROM chat_messages " +
+            "WHERE session_id = ? AND created_at >= ? AND (created_at, id) > (?, ?) ORDER BY created_at, id LIMIT ?";
+    private static final String INSERT_INDEX =
+            "INSERT INTO archived_sessions (session_id, segment, block_offset, block_length, message_count, " +
+            "first_created_at, last_created_at, context_hashes) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    // Only what was archived: a message that arrived meanwhile is newer and stays hot
+    private static final String DELETE_ARCHIVED =
+            "DELETE FROM chat_messages WHERE session_id = ? AND created_at >= ? AND (created_at, id) <= (?, ?)";
+
+    private final MessageArchive archive;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SessionCache sessionCache;
+    private final boolean enabled;
+    private final Duration idle;
+    private final int batchSize;
+    private final long maxSegmentBytes;
+
+    public MessageArchiver(MessageArchive archive,
+                           JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           SessionCache sessionCache,
+                           @Value("${app.messages.archive.enabled:false}") boolean enabled,
+                           @Value("${app.messages.archive.idle:30d}") Duration idle,
+                           @Value("${app.messages.archive.batch-size:200}") int batchSize,
+                           @Value("${app.messages.archive.max-segment-size:256MB}") DataSize maxSegmentSize) {
+        this.archive = archive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sessionCache = sessionCache;
+        this.enabled = enabled;
+        this.idle = idle;
+        this.batchSize = batchSize;
+        this.maxSegmentBytes = maxSegmentSize.toBytes();
+    }
+
+    @Scheduled(cron = "${app.messages.archive.cron:0 47 * * * *}", zone = "UTC")
+    void archiveIdleSessions() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(archive.directory());
+            jdbcTemplate.execute((Connection connection) -> {
+                if (!advisoryLock(connection, true)) {
+                    log.debug("Message archiving already running on another node");
+                    return null;
+                }
+                try {
+                    Instant cutoff = Instant.now().minus(idle);
+                    boolean more;
+                    do {
+                        more = archiveBatch(cutoff);
+                    } while (more);
+                    deleteOrphanedSegments();
+                } finally {
+                    advisoryLock(connection, false);
+                }
+                return null;
+            });
+        } catch (DataAccessException | IOException | UncheckedIOException e) {
+            log.warn("Message archiving failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return Whether more sessions may be waiting
+     */
+    private boolean archiveBatch(Instant cutoff) {
+        List<Candidate> candidates = jdbcTemplate.query(FIND_CANDIDATES,
+                (rs, row) -> new Candidate(rs.getObject(1, UUID.class), rs.getTimestamp(2).toInstant()),
+                Timestamp.from(cutoff), Timestamp.from(cutoff), ChatMessageService.CLOCK_SKEW.toSeconds() + " seconds", batchSize);
+        if (candidates.isEmpty()) {
+            return false;
+        }
+
+        String segment = "messages-" + Instant.now().toEpochMilli() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        List<Archived> sessions = new ArrayList<>(candidates.size());
+        int written = 0;
+        try (ArchiveSegment.Writer writer = ArchiveSegment.create(archive.directory(), segment)) {
+            for (Candidate candidate : candidates) {
+                Archived archived = write(writer, candidate);
+                if (archived != null) {
+                    sessions.add(archived);
+                }
+                written++;
+                // The rest of the batch goes into the next segment
+                if (writer.size() >= maxSegmentBytes) {
+                    break;
+                }
+            }
+            writer.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write message archive " + segment, e);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Archived archived : sessions) {
+                UUID sessionId = archived.candidate().id();
+                ArchiveSegment.Block block = archived.block();
+                jdbcTemplate.update(INSERT_INDEX, sessionId, segment, block.offset(), block.length(), block.count(),
+                        Timestamp.from(archived.firstCreatedAt()), Timestamp.from(archived.lastCreatedAt()),
+                        archived.contextHashes().toArray(UUID[]::new));
+                jdbcTemplate.update("UPDATE chat_sessions SET archived_at = CURRENT_TIMESTAMP WHERE id = ?", sessionId);
+                jdbcTemplate.update(DELETE_ARCHIVED, sessionId, Timestamp.from(archived.candidate().since()),
+                        Timestamp.from(archived.lastCreatedAt()), archived.lastId());
+                sessionCache.evict(sessionId);
+            }
+        });
+        long messages = 0;
+        for (Archived archived : sessions) {
+            messages += archived.block().count();
+        }
+        log.info("Archived {} messages of {} idle sessions into {}", messages, sessions.size(), segment);
+        return candidates.size() == batchSize || written < candidates.size();
+    }
+
+    /**
+     * Writes the session's block a page at a time, so only its column buffers are held in memory.
+     * @return What was archived, or null if the session's messages are gone meanwhile
+     */
+    private Archived write(ArchiveSegment.Writer writer, Candidate candidate) throws IOException {
+        Instant firstCreatedAt = null;
+        ChatMessageDTO last = null;
+        // Indexed with the block, so the context blobs it refers to are kept
+        Set<UUID> contextHashes = new HashSet<>();
+        List<ChatMessageDTO> page;
+        do {
+            Instant afterCreatedAt = last == null ? candidate.since() : last.getCreatedAt();
+            UUID afterId = last == null ? MIN_ID : last.getId();
+            page = jdbcTemplate.query(FIND_MESSAGES, (rs, row) -> new ChatMessageDTO(
+                    rs.getObject(1, UUID.class), candidate.id(), rs.getString(2), rs.getString(3), rs.getObject(4, UUID.class),
+                    rs.getTimestamp(5).toInstant()), candidate.id(), Timestamp.from(candidate.since()),
+                    Timestamp.from(afterCreatedAt), afterId, PAGE_SIZE);
+            for (ChatMessageDTO message : page) {
+                writer.add(message);
+                if (message.getContextHash() != null) {
+                    contextHashes.add(message.getContextHash());
+                }
+            }
+            if (!page.isEmpty()) {
+                firstCreatedAt = firstCreatedAt == null ? page.getFirst().getCreatedAt() : firstCreatedAt;
+                last = page.getLast();
+            }
+        } while (page.size() == PAGE_SIZE);
+        if (last == null) {
+            return null;
+        }
+        return new Archived(candidate, writer.finishBlock(), firstCreatedAt, last.getCreatedAt(), last.getId(), contextHashes);
+    }
+
+    /**
+     * Deletes segment files no index row points to any more, e.g. once all their sessions were
+     * restored or deleted.
+     */
+    private void deleteOrphanedSegments() {
+        Set<String> live = new HashSet<>(jdbcTemplate.queryForList("SELECT DISTINCT segment FROM archived_sessions", String.class));
+        Instant grace = Instant.now().minus(ORPHAN_GRACE);
+        try (Stream<Path> files = Files.list(archive.directory())) {
+            for (Path file : files.toList()) {
+                String fileName = file.getFileName().toString();
+                if (!fileName.endsWith(ArchiveSegment.SUFFIX)) {
+                    continue;
+                }
+                String segment = fileName.substring(0, fileName.length() - ArchiveSegment.SUFFIX.length());
+                if (!live.contains(segment) && Files.getLastModifiedTime(file).toInstant().isBefore(grace)) {
+                    Files.deleteIfExists(file);
+                    log.info("Deleted unreferenced message archive {}", segment);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot clean up message archives: {}", e.getMessage());
+        }
+    }
+
+    private static boolean advisoryLock(Connection connection, boolean lock) throws SQLException {
+        String sql = lock
+                ? "SELECT pg_try_advisory_lock(hashtext('message_archive'))"
+                : "SELECT pg_advisory_unlock(hashtext('message_archive'))";
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private record Archived(Candidate candidate, ArchiveSegment.Block block, Instant firstCreatedAt,
+                            Instant lastCreatedAt, UUID lastId, Set<UUID> contextHashes) {
+    }
+
+    private record Candidate(UUID id, Instant createdAt) {
+
+        // Same lower bound as the request path, so the reads prune partitions
+        Instant since() {
+            return createdAt.minus(ChatMessageService.CLOCK_SKEW);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.spring.ragchatservice.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.redisnode.RedisNodes;
+import org.redisson.client.RedisException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings Redis on a fixed schedule and records the round trip as {@code redis.ping}; failed pings
+ * count towards {@code redis.ping.failures}.
+ */
+@Component
+@Slf4j
+public class RedisLatencyProbe {
+
+    private final RedissonClient redissonClient;
+    private final Timer rtt;
+    private final Counter failures;
+
+    public RedisLatencyProbe(RedissonClient redissonClient, MeterRegistry meterRegistry) {
+        this.redissonClient = redissonClient;
+        this.rtt = Timer.builder("redis.ping").register(meterRegistry);
+        this.failures = Counter.builder("redis.ping.failures").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.metrics.redis-ping-interval-ms:10000}")
+    void probe() {
+        long start = System.nanoTime();
+        try {
+            if (redissonClient.getRedisNodes(RedisNodes.SINGLE).getInstance().ping()) {
+                rtt.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } else {
+                failures.increment();
+            }
+        } catch (RedisException e) {
+            failures.increment();
+            log.debug("Redis ping failed: {}", e.getMessage());
+        }
+    }
+}
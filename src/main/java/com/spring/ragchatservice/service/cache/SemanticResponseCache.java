@@ -0,0 +1,208 @@
+package com.spring.ragchatservice.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.spring.ragchatservice.service.retrieval.Embedder;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Cache of AI responses keyed on the (prompt, context) pair. An exact hash of the normalised
+ * pair is the fast path. With the semantic tier enabled, a miss then looks for a prior pair
+ * whose prompt and context embeddings are both above the similarity thresholds, comparing only
+ * against the entries in the prompt's {@link SimilarityBuckets}. Exact entries are optionally
+ * shared between nodes through Redis.
+ * <p>
+ * The semantic tier is off by default: the bundled {@code HashingEmbedder} is lexical, so
+ * "enable streaming" and "do not enable streaming" embed above the 0.92 threshold and would
+ * share an answer. Only turn it on with a model-backed {@link Embedder}.
+ */
+@Component
+@Slf4j
+public class SemanticResponseCache {
+
+    private static final String KEY_PREFIX = "ai-cache:";
+
+    private final Embedder embedder;
+    private final RedissonClient redissonClient;
+    private final boolean redisEnabled;
+    private final Duration ttl;
+    private final float promptThreshold;
+    private final float contextThreshold;
+    private final SimilarityBuckets<String> buckets;
+    private final Cache<String, Entry> entries;
+
+    public SemanticResponseCache(Embedder embedder,
+                                 RedissonClient redissonClient,
+                                 @Value("${app.ai.cache.max-size:10000}") long maxSize,
+                                 @Value("${app.ai.cache.ttl:1h}") Duration ttl,
+                                 @Value("${app.ai.cache.prompt-threshold:0.92}") float promptThreshold,
+                                 @Value("${app.ai.cache.context-threshold:0.9}") float contextThreshold,
+                                 @Value("${app.ai.cache.redis.enabled:false}") boolean redisEnabled,
+                                 @Value("${app.ai.cache.semantic.enabled:false}") boolean semanticEnabled) {
+        this.embedder = embedder;
+        this.redissonClient = redissonClient;
+        this.redisEnabled = redisEnabled;
+        this.ttl = ttl;
+        this.promptThreshold = promptThreshold;
+        this.contextThreshold = contextThreshold;
+        this.buckets = semanticEnabled ? new SimilarityBuckets<>(embedder.dimension()) : null;
+        // Caffeine's W-TinyLFU policy: frequently repeated questions survive one-off ones
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .evictionListener((String hash, Entry entry, RemovalCause cause) -> {
+                    if (buckets != null && entry != null) {
+                        buckets.remove(hash, entry.promptVector());
+                    }
+                })
+                .build();
+    }
+
+    public Key key(String prompt, String context) {
+        return new Key(prompt, context);
+    }
+
+    /**
+     * @return The cached response for the pair or a semantically equivalent one, or null on a miss
+     */
+    public String get(Key key) {
+        Entry entry = entries.getIfPresent(key.hash);
+        if (entry != null) {
+            return entry.response;
+        }
+
+        if (redisEnabled) {
+            String response = null;
+            try {
+                response = bucket(key.hash).get();
+            } catch (RedisException e) {
+                log.warn("AI response cache read failed: {}", e.getMessage());
+            }
+            if (response != null) {
+                cache(key, response);
+                return response;
+            }
+        }
+
+        if (buckets == null) {
+            return null;
+        }
+        float[] promptVector = key.promptVector();
+        float[] contextVector = key.contextVector();
+        for (String hash : buckets.candidates(promptVector)) {
+            Entry candidate = entries.getIfPresent(hash);
+            if (candidate != null
+                    && dot(promptVector, candidate.promptVector) >= promptThreshold
+                    && contextMatches(contextVector, candidate.contextVector)) {
+                log.debug("Semantic cache hit for prompt hash {}", key.hash);
+                return candidate.response;
+            }
+        }
+        return null;
+    }
+
+    public void put(Key key, String response) {
+        if (response == null || response.isBlank()) {
+            return;
+        }
+        cache(key, response);
+        if (redisEnabled) {
+            try {
+                bucket(key.hash).setAsync(response, ttl);
+            } catch (RedisException e) {
+                log.warn("AI response cache write failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void cache(Key key, String response) {
+        if (buckets == null) {
+            entries.put(key.hash, new Entry(null, null, response));
+            return;
+        }
+        // Bucket first: a concurrent eviction of the new entry then finds it to remove
+        buckets.add(key.hash, key.promptVector());
+        entries.put(key.hash, new Entry(key.promptVector(), key.contextVector(), response));
+    }
+
+    private boolean contextMatches(float[] context, float[] candidate) {
+        if (context == null || candidate == null) {
+            return context == candidate;
+        }
+        return dot(context, candidate) >= contextThreshold;
+    }
+
+    private RBucket<String> bucket(String hash) {
+        return redissonClient.getBucket(KEY_PREFIX + hash, StringCodec.INSTANCE);
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static String normalise(String text) {
+        return text.strip().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    /**
+     * Lookup key for one (prompt, context) pair. Embeddings are only computed when the exact
+     * hash misses.
+     */
+    public final class Key {
+
+        private final String prompt;
+        private final String context;
+        private final String hash;
+        private float[] promptVector;
+        private float[] contextVector;
+
+        private Key(String prompt, String context) {
+            this.prompt = normalise(prompt);
+            this.context = context == null || context.isBlank() ? null : normalise(context);
+            this.hash = sha256(this.prompt + '\u0000' + (this.context == null ? "" : this.context));
+        }
+
+        private float[] promptVector() {
+            if (promptVector == null) {
+                promptVector = embedder.embed(prompt);
+            }
+            return promptVector;
+        }
+
+        private float[] contextVector() {
+            if (contextVector == null && context != null) {
+                contextVector = embedder.embed(context);
+            }
+            return contextVector;
+        }
+
+        private static String sha256(String text) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+                return HexFormat.of().formatHex(digest);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private record Entry(float[] promptVector, float[] contextVector, String response) {
+    }
+}
@@ -0,0 +1,180 @@
+package com.spring.ragchatservice.service.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spring.ragchatservice.dto.ChatSessionDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.TypedJsonJacksonCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Two-level read-through cache of session metadata: a per-node near cache in front of a shared
+ * Redis copy. Writers evict after commit and broadcast the id so every node drops its near entry.
+ * Redis trouble degrades to a database read rather than failing the request.
+ * <p>
+ * A reader may load the old row just before a commit and finish after its eviction. Evictions
+ * therefore bump a per-session generation in Redis (and a counter on each node), and a loaded
+ * session is only cached if neither moved while it was being read.
+ */
+@Component
+@Slf4j
+public class SessionCache {
+
+    private static final String KEY_PREFIX = "session:";
+    private static final String GENERATION_PREFIX = "session-generation:";
+    private static final String INVALIDATION_TOPIC = "session-cache:invalidations";
+    private static final String PUT_IF_CURRENT =
+            "if (redis.call('get', KEYS[1]) or '0') ~= ARGV[1] then return 0 end " +
+            "redis.call('set', KEYS[2], ARGV[2], 'PX', ARGV[3]) return 1";
+    private static final String EVICT =
+            "redis.call('incr', KEYS[1]) redis.call('pexpire', KEYS[1], ARGV[1]) " +
+            "return redis.call('del', KEYS[2])";
+
+    private final RedissonClient redissonClient;
+    private final ObjectMapper objectMapper;
+    private final Codec codec;
+    private final Duration redisTtl;
+    private final Cache<UUID, ChatSessionDTO> nearCache;
+    private final RTopic invalidations;
+    private final AtomicLong localEvictions = new AtomicLong();
+    private int listenerId;
+
+    public SessionCache(RedissonClient redissonClient,
+                        ObjectMapper objectMapper,
+                        @Value("${app.session-cache.near.max-size:10000}") long nearMaxSize,
+                        @Value("${app.session-cache.near.ttl:60s}") Duration nearTtl,
+                        @Value("${app.session-cache.redis.ttl:30m}") Duration redisTtl) {
+        this.redissonClient = redissonClient;
+        this.objectMapper = objectMapper.copy();
+        this.codec = new TypedJsonJacksonCodec(ChatSessionDTO.class, this.objectMapper);
+        this.redisTtl = redisTtl;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearMaxSize)
+                .expireAfterWrite(nearTtl)
+                .build();
+        this.invalidations = redissonClient.getTopic(INVALIDATION_TOPIC, StringCodec.INSTANCE);
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerId = invalidations.addListener(String.class,
+                (channel, sessionId) -> {
+                    localEvictions.incrementAndGet();
+                    nearCache.invalidate(UUID.fromString(sessionId));
+                });
+    }
+
+    @PreDestroy
+    void unsubscribe() {
+        invalidations.removeListener(listenerId);
+    }
+
+    /**
+     * Returns the cached session, loading and caching it on a miss. The loader may return null
+     * for a missing session; misses are not cached.
+     */
+    public ChatSessionDTO get(UUID sessionId, Supplier<ChatSessionDTO> loader) {
+        ChatSessionDTO session = nearCache.getIfPresent(sessionId);
+        if (session != null) {
+            return session;
+        }
+
+        try {
+            session = bucket(sessionId).get();
+        } catch (RedisException e) {
+            log.warn("Session cache read failed for {}: {}", sessionId, e.getMessage());
+        }
+        if (session != null) {
+            nearCache.put(sessionId, session);
+            return session;
+        }
+
+        // Read before the row, so an eviction that lands during the load is seen
+        long evictions = localEvictions.get();
+        String generation = generation(sessionId);
+        session = loader.get();
+        if (session != null) {
+            cacheLoaded(session, generation, evictions);
+        }
+        return session;
+    }
+
+    private String generation(UUID sessionId) {
+        try {
+            String generation = redissonClient.<String>getBucket(GENERATION_PREFIX + sessionId, StringCodec.INSTANCE).get();
+            return generation == null ? "0" : generation;
+        } catch (RedisException e) {
+            log.warn("Session cache read failed for {}: {}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void cacheLoaded(ChatSessionDTO session, String generation, long evictions) {
+        if (generation != null) {
+            try {
+                redissonClient.getScript(StringCodec.INSTANCE).evalAsync(RScript.Mode.READ_WRITE, PUT_IF_CURRENT,
+                        RScript.ReturnType.BOOLEAN,
+                        List.<Object>of(GENERATION_PREFIX + session.getId(), KEY_PREFIX + session.getId()),
+                        generation, objectMapper.writeValueAsString(session), String.valueOf(redisTtl.toMillis()));
+            } catch (RedisException | JsonProcessingException e) {
+                log.warn("Session cache write failed for {}: {}", session.getId(), e.getMessage());
+            }
+        }
+        if (localEvictions.get() == evictions) {
+            nearCache.put(session.getId(), session);
+        }
+    }
+
+    /**
+     * Evicts the session on every node, deferred until the surrounding transaction commits so that
+     * no node can re-read the old row in between.
+     */
+    public void evict(UUID sessionId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(sessionId);
+                }
+            });
+        } else {
+            evictNow(sessionId);
+        }
+    }
+
+    private void evictNow(UUID sessionId) {
+        localEvictions.incrementAndGet();
+        nearCache.invalidate(sessionId);
+        try {
+            redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, EVICT, RScript.ReturnType.INTEGER,
+                    List.<Object>of(GENERATION_PREFIX + sessionId, KEY_PREFIX + sessionId), String.valueOf(redisTtl.toMillis()));
+            invalidations.publishAsync(sessionId.toString());
+        } catch (RedisException e) {
+            log.warn("Session cache eviction failed for {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private RBucket<ChatSessionDTO> bucket(UUID sessionId) {
+        return redissonClient.getBucket(KEY_PREFIX + sessionId, codec);
+    }
+}
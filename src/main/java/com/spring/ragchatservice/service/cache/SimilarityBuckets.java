@@ -0,0 +1,99 @@
+package com.spring.ragchatservice.service.cache;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Locality-sensitive buckets over unit vectors, so a similarity lookup only compares against
+ * the few keys whose vectors point the same way. Each of {@value #TABLES} tables hashes a vector
+ * to the signs of its dot products with {@value #BITS} random hyperplanes; a lookup probes the
+ * exact signature and every signature one bit away in each table.
+ * <p>
+ * For two vectors at cosine similarity 0.92 a hyperplane separates them with probability ~0.13,
+ * which puts the chance of sharing no probed bucket in any table near 2%; the candidate set is
+ * a few percent of the keys.
+ */
+final class SimilarityBuckets<K> {
+
+    private static final int TABLES = 4;
+    private static final int BITS = 10;
+
+    private final float[][][] hyperplanes;
+    private final Map<Integer, Set<K>> buckets = new ConcurrentHashMap<>();
+
+    SimilarityBuckets(int dimension) {
+        SplittableRandom random = new SplittableRandom(0x5EED);
+        this.hyperplanes = new float[TABLES][BITS][dimension];
+        for (float[][] table : hyperplanes) {
+            for (float[] hyperplane : table) {
+                for (int i = 0; i < dimension; i++) {
+                    hyperplane[i] = (float) random.nextGaussian();
+                }
+            }
+        }
+    }
+
+    void add(K key, float[] vector) {
+        for (int table = 0; table < TABLES; table++) {
+            buckets.computeIfAbsent(bucket(table, signature(table, vector)), ignored -> ConcurrentHashMap.newKeySet())
+                    .add(key);
+        }
+    }
+
+    void remove(K key, float[] vector) {
+        for (int table = 0; table < TABLES; table++) {
+            buckets.computeIfPresent(bucket(table, signature(table, vector)), (bucket, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    /**
+     * @return Keys that may be similar to {@code vector}, in no particular order
+     */
+    Set<K> candidates(float[] vector) {
+        Set<K> candidates = new LinkedHashSet<>();
+        for (int table = 0; table < TABLES; table++) {
+            int signature = signature(table, vector);
+            collect(candidates, bucket(table, signature));
+            for (int bit = 0; bit < BITS; bit++) {
+                collect(candidates, bucket(table, signature ^ (1 << bit)));
+            }
+        }
+        return candidates;
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    private void collect(Set<K> into, int bucket) {
+        Set<K> keys = buckets.get(bucket);
+        if (keys != null) {
+            into.addAll(keys);
+        }
+    }
+
+    private int signature(int table, float[] vector) {
+        int signature = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            float[] hyperplane = hyperplanes[table][bit];
+            float dot = 0;
+            for (int i = 0; i < vector.length; i++) {
+                dot += hyperplane[i] * vector[i];
+            }
+            if (dot >= 0) {
+                signature |= 1 << bit;
+            }
+        }
+        return signature;
+    }
+
+    private static int bucket(int table, int signature) {
+        return table << BITS | signature;
+    }
+}
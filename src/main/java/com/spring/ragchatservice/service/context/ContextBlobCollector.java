@@ -0,0 +1,110 @@
+package com.spring.ragchatservice.service.context;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Deletes context blobs nothing refers to any more: no message in chat_messages and no archived
+ * session. Sweeps context_blobs in hash order, a batch at a time, and only deletes blobs last
+ * stored longer than {@code grace} ago, so a writer that still trusts a blob to exist (see
+ * {@link ContextBlobStore#REMEMBER_STORED}) never references a deleted one. Runs on one node at a
+ * time, guarded by a Postgres advisory lock.
+ */
+@Component
+@Slf4j
+public class ContextBlobCollector {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    private static final String NEXT_BATCH =
+            "SELECT hash FROM context_blobs WHERE hash > ? ORDER BY hash LIMIT ?";
+    private static final String DELETE_UNREFERENCED =
+            "DELETE FROM context_blobs b WHERE b.hash = ANY(?) AND b.referenced_at < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM chat_messages m WHERE m.context_hash = b.hash) " +
+            "AND NOT EXISTS (SELECT 1 FROM archived_sessions a WHERE a.context_hashes @> ARRAY[b.hash])";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Duration grace;
+
+    public ContextBlobCollector(JdbcTemplate jdbcTemplate,
+                                @Value("${app.messages.context-blobs.collect.enabled:true}") boolean enabled,
+                                @Value("${app.messages.context-blobs.collect.grace:7d}") Duration grace) {
+        if (grace.compareTo(ContextBlobStore.REMEMBER_STORED) <= 0) {
+            throw new IllegalArgumentException("Context blob grace period must exceed " + ContextBlobStore.REMEMBER_STORED);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.grace = grace;
+    }
+
+    @Scheduled(cron = "${app.messages.context-blobs.collect.cron:0 27 4 * * *}", zone = "UTC")
+    void collect() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((Connection connection) -> {
+                if (!advisoryLock(connection, true)) {
+                    log.debug("Context blob collection already running on another node");
+                    return null;
+                }
+                try {
+                    sweep(Instant.now().minus(grace));
+                } finally {
+                    advisoryLock(connection, false);
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Context blob collection failed: {}", e.getMessage());
+        }
+    }
+
+    private void sweep(Instant unreferencedSince) {
+        // Postgres orders uuids as unsigned bytes, so the nil uuid sorts first
+        UUID after = new UUID(0L, 0L);
+        long deleted = 0;
+        List<UUID> batch;
+        do {
+            batch = jdbcTemplate.queryForList(NEXT_BATCH, UUID.class, after, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            try {
+                deleted += jdbcTemplate.update(DELETE_UNREFERENCED, batch.toArray(UUID[]::new), Timestamp.from(unreferencedSince));
+            } catch (DataIntegrityViolationException e) {
+                // A message referencing one of them was inserted meanwhile; the rest wait for the next run
+                log.debug("Skipped a batch of context blobs that gained a reference: {}", e.getMessage());
+            }
+            after = batch.getLast();
+        } while (batch.size() == BATCH_SIZE);
+        if (deleted > 0) {
+            log.info("Deleted {} unreferenced context blobs", deleted);
+        }
+    }
+
+    private static boolean advisoryLock(Connection connection, boolean lock) throws SQLException {
+        String sql = lock
+                ? "SELECT pg_try_advisory_lock(hashtext('context_blobs'))"
+                : "SELECT pg_advisory_unlock(hashtext('context_blobs'))";
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.spring.ragchatservice.service.context;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.luben.zstd.Zstd;
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Content-addressed store for the retrieved context of messages. Each distinct context is kept once
+ * in context_blobs, zstd-compressed and keyed by the first 128 bits of its SHA-256; messages only
+ * carry that key. Contexts are read back one at a time on request, and only with message listings
+ * when {@code app.messages.inline-retrieved-context} is set. Blobs no message refers to any more are
+ * deleted by {@link ContextBlobCollector}.
+ */
+@Component
+public class ContextBlobStore {
+
+    static final short CODEC_RAW = 0;
+    static final short CODEC_ZSTD = 1;
+
+    // Storing an existing context marks it as referenced again, which keeps the collector off it
+    private static final String INSERT =
+            "INSERT INTO context_blobs (hash, codec, raw_length, data) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (hash) DO UPDATE SET referenced_at = CURRENT_TIMESTAMP";
+    private static final String FIND =
+            "SELECT codec, raw_length, data FROM context_blobs WHERE hash = ?";
+    private static final String FIND_ALL =
+            "SELECT hash, codec, raw_length, data FROM context_blobs WHERE hash = ANY(?)";
+
+    /**
+     * How long a hash seen stored is trusted without storing it again. The collector only deletes
+     * blobs unreferenced for longer, so a message written meanwhile never points at a deleted one.
+     */
+    public static final Duration REMEMBER_STORED = Duration.ofHours(1);
+    private static final long KNOWN_HASHES = 100_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int compressionLevel;
+    private final boolean inlineContext;
+    private final Cache<UUID, Boolean> stored;
+    private final Cache<UUID, String> contexts;
+
+    public ContextBlobStore(JdbcTemplate jdbcTemplate,
+                            @Value("${app.messages.context-blobs.compression-level:3}") int compressionLevel,
+                            @Value("${app.messages.context-blobs.cache-size:1000}") long cacheSize,
+                            @Value("${app.messages.inline-retrieved-context:false}") boolean inlineContext) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.compressionLevel = compressionLevel;
+        this.inlineContext = inlineContext;
+        this.stored = Caffeine.newBuilder()
+                .maximumSize(KNOWN_HASHES)
+                .expireAfterWrite(REMEMBER_STORED)
+                .build();
+        this.contexts = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+    }
+
+    /**
+     * @return The key the context is stored under
+     */
+    public static UUID hash(String context) {
+        try {
+            ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(context.getBytes(StandardCharsets.UTF_8)));
+            return new UUID(digest.getLong(), digest.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Stores the context unless it already is.
+     * @return Its key, or null for a null context
+     */
+    public UUID save(String context) {
+        if (context == null) {
+            return null;
+        }
+        UUID hash = hash(context);
+        if (stored.getIfPresent(hash) == null) {
+            insert(Map.of(hash, context));
+        }
+        return hash;
+    }
+
+    /**
+     * Stores the context of each message that carries its text, filling in the key where missing,
+     * so the messages can then be inserted referencing it.
+     */
+    public void saveAll(List<ChatMessageDTO> messages) {
+        Map<UUID, String> missing = new LinkedHashMap<>();
+        for (ChatMessageDTO message : messages) {
+            if (message.getRetrievedContext() == null) {
+                continue;
+            }
+            if (message.getContextHash() == null) {
+                message.setContextHash(hash(message.getRetrievedContext()));
+            }
+            if (stored.getIfPresent(message.getContextHash()) == null) {
+                missing.putIfAbsent(message.getContextHash(), message.getRetrievedContext());
+            }
+        }
+        if (!missing.isEmpty()) {
+            insert(missing);
+        }
+    }
+
+    /**
+     * @return The context stored under the key, or null if there is none
+     */
+    public String find(UUID hash) {
+        return contexts.get(hash, key -> jdbcTemplate.query(FIND, rs -> rs.next()
+                ? decode(key, rs.getShort(1), rs.getInt(2), rs.getBytes(3))
+                : null, key));
+    }
+
+    /**
+     * Prepares listed messages for the response: with inline context enabled each gets its context
+     * text, otherwise only the hash is kept.
+     * @return The same messages
+     */
+    public <M extends Iterable<ChatMessageDTO>> M inline(M messages) {
+        if (!inlineContext) {
+            messages.forEach(message -> message.setRetrievedContext(null));
+            return messages;
+        }
+        Set<UUID> hashes = new HashSet<>();
+        for (ChatMessageDTO message : messages) {
+            if (message.getRetrievedContext() == null && message.getContextHash() != null) {
+                hashes.add(message.getContextHash());
+            }
+        }
+        if (hashes.isEmpty()) {
+            return messages;
+        }
+        Map<UUID, String> found = contexts.getAll(hashes, this::findAll);
+        for (ChatMessageDTO message : messages) {
+            if (message.getRetrievedContext() == null && message.getContextHash() != null) {
+                message.setRetrievedContext(found.get(message.getContextHash()));
+            }
+        }
+        return messages;
+    }
+
+    public ChatMessageDTO inline(ChatMessageDTO message) {
+        return inline(List.of(message)).getFirst();
+    }
+
+    private Map<UUID, String> findAll(Set<? extends UUID> hashes) {
+        Map<UUID, String> found = new HashMap<>();
+        jdbcTemplate.query(FIND_ALL, rs -> {
+            UUID hash = rs.getObject(1, UUID.class);
+            found.put(hash, decode(hash, rs.getShort(2), rs.getInt(3), rs.getBytes(4)));
+        }, (Object) hashes.toArray(UUID[]::new));
+        return found;
+    }
+
+    private void insert(Map<UUID, String> contexts) {
+        List<Object[]> rows = new ArrayList<>(contexts.size());
+        contexts.forEach((hash, context) -> {
+            byte[] raw = context.getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = Zstd.compress(raw, compressionLevel);
+            // Short contexts can come out larger than they went in
+            rows.add(compressed.length < raw.length
+                    ? new Object[]{hash, CODEC_ZSTD, raw.length, compressed}
+                    : new Object[]{hash, CODEC_RAW, raw.length, raw});
+        });
+        jdbcTemplate.batchUpdate(INSERT, rows);
+        remember(contexts.keySet());
+    }
+
+    // Inside a transaction the rows only exist for others once it commits
+    private void remember(Collection<UUID> hashes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            hashes.forEach(hash -> stored.put(hash, Boolean.TRUE));
+            return;
+        }
+        List<UUID> pending = List.copyOf(hashes);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pending.forEach(hash -> stored.put(hash, Boolean.TRUE));
+            }
+        });
+    }
+
+    private static String decode(UUID hash, short codec, int rawLength, byte[] data) {
+        byte[] raw = switch (codec) {
+            case CODEC_RAW -> data;
+            case CODEC_ZSTD -> Zstd.decompress(data, rawLength);
+            default -> throw new IllegalStateException("Unknown codec " + codec + " for context " + hash);
+        };
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+}
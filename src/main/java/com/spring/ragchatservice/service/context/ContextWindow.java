@@ -0,0 +1,163 @@
+package com.spring.ragchatservice.service.context;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.repository.ChatMessageRepository;
+import com.spring.ragchatservice.repository.projection.MessageContentView;
+import com.spring.ragchatservice.service.writebehind.MessageWriteBuffer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Builds the prompt context for a session from its most recent messages within a character budget.
+ * Turns that no longer fit are folded into a rolling per-session summary, so older history is
+ * read from the database at most once instead of on every request.
+ */
+@Component
+public class ContextWindow {
+
+    private final ChatMessageRepository messageRepository;
+    private final MessageWriteBuffer writeBuffer;
+    private final int maxMessages;
+    private final int maxChars;
+    private final int summaryMaxChars;
+    private final int snippetChars;
+    private final Cache<UUID, SessionSummary> summaries;
+
+    public ContextWindow(ChatMessageRepository messageRepository,
+                         MessageWriteBuffer writeBuffer,
+                         @Value("${app.context.max-messages:50}") int maxMessages,
+                         @Value("${app.context.max-chars:8000}") int maxChars,
+                         @Value("${app.context.summary.max-chars:1000}") int summaryMaxChars,
+                         @Value("${app.context.summary.snippet-chars:160}") int snippetChars,
+                         @Value("${app.context.summary.max-sessions:10000}") long maxSessions) {
+        this.messageRepository = messageRepository;
+        this.writeBuffer = writeBuffer;
+        this.maxMessages = maxMessages;
+        this.maxChars = maxChars;
+        this.summaryMaxChars = summaryMaxChars;
+        this.snippetChars = snippetChars;
+        this.summaries = Caffeine.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+    }
+
+    /**
+     * @param since Lower bound on the session's message timestamps, so older partitions are skipped
+     */
+    public String buildContext(UUID sessionId, Instant since) {
+        // newest first
+        List<ChatMessageDTO> pending = writeBuffer.pending(sessionId);
+        List<MessageContentView> recent = messageRepository
+                .findByChatSessionIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(sessionId, since, Limit.of(maxMessages));
+        if (!pending.isEmpty()) {
+            recent = withPending(recent, pending);
+        }
+        if (recent.isEmpty()) {
+            return "";
+        }
+
+        // Keep as many of the newest turns as fit in the budget
+        int included = 0;
+        int used = 0;
+        for (MessageContentView message : recent) {
+            int needed = message.getContent().length() + 1;
+            if (included > 0 && used + needed > maxChars) {
+                break;
+            }
+            used += needed;
+            included++;
+        }
+
+        SessionSummary summary = summaries.get(sessionId, id -> new SessionSummary());
+        foldEvicted(sessionId, summary, recent, included);
+
+        StringBuilder context = new StringBuilder(summary.length() + Math.min(used, maxChars));
+        summary.appendTo(context);
+        for (int i = included - 1; i >= 0; i--) {
+            String content = recent.get(i).getContent();
+            int room = maxChars - (context.length() - summary.length());
+            if (content.length() > room) {
+                // Only the newest turn can overflow on its own; keep its tail
+                content = content.substring(content.length() - Math.max(room, 0));
+            }
+            context.append(content).append('\n');
+        }
+        if (!context.isEmpty()) {
+            context.setLength(context.length() - 1);
+        }
+        return context.toString();
+    }
+
+    // Buffered messages are the newest of the session; they go in front of the stored ones
+    private List<MessageContentView> withPending(List<MessageContentView> recent, List<ChatMessageDTO> pending) {
+        List<MessageContentView> merged = new ArrayList<>(maxMessages);
+        Set<UUID> ids = new HashSet<>();
+        for (ChatMessageDTO message : pending.reversed()) {
+            if (merged.size() < maxMessages && ids.add(message.getId())) {
+                merged.add(new PendingTurn(message));
+            }
+        }
+        for (MessageContentView message : recent) {
+            if (merged.size() < maxMessages && ids.add(message.getId())) {
+                merged.add(message);
+            }
+        }
+        return merged;
+    }
+
+    private void foldEvicted(UUID sessionId, SessionSummary summary, List<MessageContentView> recent, int included) {
+        MessageContentView oldestFetched = recent.get(recent.size() - 1);
+
+        if (recent.size() == maxMessages && oldestFetched.getCreatedAt() != null) {
+            Instant watermark = summary.getWatermark();
+            if (watermark == null) {
+                // First sight of this session on this node: summarise from here on, don't backfill
+                summary.startAt(oldestFetched.getCreatedAt().minusNanos(1));
+            } else if (watermark.isBefore(oldestFetched.getCreatedAt())) {
+                // Turns that slid past the fetch limit since the last request
+                messageRepository.findContentBetween(sessionId, watermark, oldestFetched.getCreatedAt(), Limit.of(maxMessages))
+                        .forEach(message -> summary.fold(message, snippetChars, summaryMaxChars));
+            }
+        }
+
+        // Fetched turns that did not fit the budget, oldest first
+        for (int i = recent.size() - 1; i >= included; i--) {
+            summary.fold(recent.get(i), snippetChars, summaryMaxChars);
+        }
+    }
+
+    private record PendingTurn(ChatMessageDTO message) implements MessageContentView {
+
+        @Override
+        public UUID getId() {
+            return message.getId();
+        }
+
+        @Override
+        public String getSender() {
+            return message.getSender();
+        }
+
+        @Override
+        public String getContent() {
+            return message.getContent();
+        }
+
+        @Override
+        public Instant getCreatedAt() {
+            return message.getCreatedAt();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.spring.ragchatservice.service.context;
+
+import com.spring.ragchatservice.repository.projection.MessageContentView;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Rolling, size-bounded digest of the turns that have slid out of a session's context window.
+ * Each evicted turn is folded in once as a short snippet; the oldest snippets drop off first.
+ */
+class SessionSummary {
+
+    private final Deque<String> lines = new ArrayDeque<>();
+    private int length;
+    private Instant watermark;
+
+    synchronized Instant getWatermark() {
+        return watermark;
+    }
+
+    synchronized void startAt(Instant createdAt) {
+        if (watermark == null) {
+            watermark = createdAt;
+        }
+    }
+
+    synchronized void fold(MessageContentView message, int snippetChars, int maxChars) {
+        Instant createdAt = message.getCreatedAt();
+        if (createdAt == null || (watermark != null && !createdAt.isAfter(watermark))) {
+            return; // already folded
+        }
+
+        String content = message.getContent();
+        String snippet = content.length() > snippetChars ? content.substring(0, snippetChars) : content;
+        String line = message.getSender() + ": " + snippet;
+        lines.addLast(line);
+        length += line.length() + 1;
+        watermark = createdAt;
+
+        while (length > maxChars && !lines.isEmpty()) {
+            length -= lines.removeFirst().length() + 1;
+        }
+    }
+
+    synchronized int length() {
+        return length;
+    }
+
+    synchronized void appendTo(StringBuilder target) {
+        for (String line : lines) {
+            target.append(line).append('\n');
+        }
+    }
+}
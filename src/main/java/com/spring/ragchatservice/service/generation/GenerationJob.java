@@ -0,0 +1,9 @@
+package com.spring.ragchatservice.service.generation;
+
+import java.util.UUID;
+
+/**
+ * Request to generate the AI reply to a stored message; identified by the message id.
+ */
+public record GenerationJob(UUID messageId, UUID sessionId, String prompt, String retrievedContext) {
+}
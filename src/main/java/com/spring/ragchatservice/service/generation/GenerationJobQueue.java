@@ -0,0 +1,266 @@
+package com.spring.ragchatservice.service.generation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spring.ragchatservice.dto.GenerationJobDTO;
+import com.spring.ragchatservice.dto.GenerationStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.AutoClaimResult;
+import org.redisson.api.RBucket;
+import org.redisson.api.RStream;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamCreateGroupArgs;
+import org.redisson.api.stream.StreamReadGroupArgs;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.TypedJsonJacksonCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of pending reply generations and their status. Jobs and statuses are shared through
+ * Redis so any node's workers can pick a job up and any node can answer a poll; when Redis is
+ * disabled or failing, both fall back to this node's memory.
+ * <p>
+ * Shared jobs live in a Redis stream read through a consumer group, so a delivered job stays
+ * pending until its worker calls {@link #complete}. If the node dies mid-job, another node claims
+ * the entry once it has been idle for {@code claim-idle}, which must exceed the longest generation.
+ * Jobs queued in memory are lost with the node; {@link #failLocal} marks them FAILED on shutdown.
+ */
+@Component
+@Slf4j
+public class GenerationJobQueue {
+
+    private static final String STREAM_KEY = "ai-generation:job-stream";
+    private static final String GROUP = "ai-generation-workers";
+    private static final String FIELD = "job";
+    private static final String STATUS_PREFIX = "ai-generation:status:";
+
+    private final RedissonClient redissonClient;
+    private final boolean redisEnabled;
+    private final Duration statusTtl;
+    private final Duration claimIdle;
+    private final Codec statusCodec;
+    private final RStream<String, GenerationJob> redisStream;
+    private final String consumer = "worker-" + UUID.randomUUID();
+    private final Map<UUID, StreamMessageId> deliveries = new ConcurrentHashMap<>();
+    private final BlockingQueue<GenerationJob> localQueue = new LinkedBlockingQueue<>();
+    private final Cache<UUID, GenerationJobDTO> localStatuses;
+    private volatile long nextClaim;
+    private volatile boolean groupCreated;
+
+    public GenerationJobQueue(RedissonClient redissonClient,
+                              ObjectMapper objectMapper,
+                              @Value("${app.generation.redis.enabled:true}") boolean redisEnabled,
+                              @Value("${app.generation.status-ttl:1h}") Duration statusTtl,
+                              @Value("${app.generation.claim-idle:5m}") Duration claimIdle) {
+        this.redissonClient = redissonClient;
+        this.redisEnabled = redisEnabled;
+        this.statusTtl = statusTtl;
+        this.claimIdle = claimIdle;
+        this.statusCodec = new TypedJsonJacksonCodec(GenerationJobDTO.class, objectMapper.copy());
+        this.redisStream = redissonClient.getStream(STREAM_KEY,
+                new TypedJsonJacksonCodec(String.class, GenerationJob.class, objectMapper.copy()));
+        this.nextClaim = System.nanoTime();
+        this.localStatuses = Caffeine.newBuilder()
+                .expireAfterWrite(statusTtl)
+                .build();
+    }
+
+    /**
+     * Queues the job once the surrounding transaction commits, so a worker never sees a job for a
+     * message it cannot read yet, and a rolled-back message never gets a reply.
+     */
+    public void submit(GenerationJob job) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(job);
+                }
+            });
+        } else {
+            enqueue(job);
+        }
+    }
+
+    /**
+     * Waits up to {@code timeout} for the next job, preferring jobs queued locally, then jobs
+     * abandoned by a dead worker. The caller must {@link #complete} or {@link #requeue} it.
+     * @return The job, or null if none arrived in time
+     */
+    public GenerationJob poll(Duration timeout) throws InterruptedException {
+        GenerationJob job = localQueue.poll();
+        if (job != null) {
+            return job;
+        }
+        if (redisEnabled) {
+            try {
+                createGroup();
+                Map<StreamMessageId, Map<String, GenerationJob>> entries = claimAbandoned();
+                if (entries.isEmpty()) {
+                    entries = redisStream.readGroup(GROUP, consumer, StreamReadGroupArgs.neverDelivered()
+                            .count(1)
+                            .timeout(timeout));
+                }
+                return deliver(entries);
+            } catch (RedisException e) {
+                log.warn("Generation queue poll failed: {}", e.getMessage());
+            }
+        }
+        return localQueue.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops a finished job, whether its reply was stored or it failed for good.
+     */
+    public void complete(GenerationJob job) {
+        StreamMessageId delivered = deliveries.remove(job.messageId());
+        if (delivered == null) {
+            return;
+        }
+        try {
+            redisStream.ack(GROUP, delivered);
+            redisStream.remove(delivered);
+        } catch (RedisException e) {
+            // The job is claimed again after claim-idle and skipped as already completed
+            log.warn("Generation job {} not acknowledged: {}", job.messageId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Hands a job this node started but will not finish back to the shared queue, e.g. on shutdown.
+     * A job queued in memory cannot outlive the node and is marked FAILED instead.
+     */
+    public void requeue(GenerationJob job) {
+        StreamMessageId delivered = deliveries.remove(job.messageId());
+        if (delivered == null) {
+            failed(job, "Node shut down before the reply was generated");
+            return;
+        }
+        updateStatus(new GenerationJobDTO(job.messageId(), job.sessionId(), GenerationStatus.QUEUED, null, null));
+        try {
+            // Add before acknowledging: a failure in between leaves a duplicate, never a lost job
+            redisStream.add(StreamAddArgs.entry(FIELD, job));
+            redisStream.ack(GROUP, delivered);
+            redisStream.remove(delivered);
+        } catch (RedisException e) {
+            log.warn("Generation job {} left for another node to claim: {}", job.messageId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Marks every job still queued in this node's memory FAILED, for shutdown.
+     */
+    public void failLocal() {
+        for (GenerationJob job = localQueue.poll(); job != null; job = localQueue.poll()) {
+            failed(job, "Node shut down before the reply was generated");
+        }
+    }
+
+    public void updateStatus(GenerationJobDTO status) {
+        localStatuses.put(status.getMessageId(), status);
+        if (redisEnabled) {
+            try {
+                statusBucket(status.getMessageId()).setAsync(status, statusTtl);
+            } catch (RedisException e) {
+                log.warn("Generation status write failed for {}: {}", status.getMessageId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return Latest known status of the reply to the message, or null if no job is known
+     */
+    public GenerationJobDTO getStatus(UUID messageId) {
+        if (redisEnabled) {
+            try {
+                GenerationJobDTO status = statusBucket(messageId).get();
+                if (status != null) {
+                    return status;
+                }
+            } catch (RedisException e) {
+                log.warn("Generation status read failed for {}: {}", messageId, e.getMessage());
+            }
+        }
+        return localStatuses.getIfPresent(messageId);
+    }
+
+    private void enqueue(GenerationJob job) {
+        updateStatus(new GenerationJobDTO(job.messageId(), job.sessionId(), GenerationStatus.QUEUED, null, null));
+        if (redisEnabled) {
+            try {
+                redisStream.add(StreamAddArgs.entry(FIELD, job));
+                return;
+            } catch (RedisException e) {
+                log.warn("Generation queue unavailable, queueing {} locally: {}", job.messageId(), e.getMessage());
+            }
+        }
+        localQueue.add(job);
+    }
+
+    private void failed(GenerationJob job, String error) {
+        updateStatus(new GenerationJobDTO(job.messageId(), job.sessionId(), GenerationStatus.FAILED, null, error));
+    }
+
+    /**
+     * @return Up to one entry left pending by a consumer for longer than {@code claimIdle}, now owned by this one
+     */
+    private Map<StreamMessageId, Map<String, GenerationJob>> claimAbandoned() {
+        if (System.nanoTime() - nextClaim < 0) {
+            return Map.of();
+        }
+        AutoClaimResult<String, GenerationJob> claimed = redisStream.autoClaim(GROUP, consumer,
+                claimIdle.toMillis(), TimeUnit.MILLISECONDS, StreamMessageId.MIN, 1);
+        if (claimed.getMessages().isEmpty()) {
+            // Nothing abandoned; look again after another idle period
+            nextClaim = System.nanoTime() + claimIdle.toNanos();
+        }
+        return claimed.getMessages();
+    }
+
+    private GenerationJob deliver(Map<StreamMessageId, Map<String, GenerationJob>> entries) {
+        for (Map.Entry<StreamMessageId, Map<String, GenerationJob>> entry : entries.entrySet()) {
+            GenerationJob job = entry.getValue().get(FIELD);
+            if (job == null) {
+                redisStream.ack(GROUP, entry.getKey());
+                redisStream.remove(entry.getKey());
+                continue;
+            }
+            deliveries.put(job.messageId(), entry.getKey());
+            return job;
+        }
+        return null;
+    }
+
+    private void createGroup() {
+        if (groupCreated) {
+            return;
+        }
+        try {
+            redisStream.createGroup(StreamCreateGroupArgs.name(GROUP).id(StreamMessageId.ALL).makeStream());
+        } catch (RedisException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+        groupCreated = true;
+    }
+
+    private RBucket<GenerationJobDTO> statusBucket(UUID messageId) {
+        return redissonClient.getBucket(STATUS_PREFIX + messageId, statusCodec);
+    }
+}
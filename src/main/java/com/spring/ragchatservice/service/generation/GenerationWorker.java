@@ -0,0 +1,106 @@
+package com.spring.ragchatservice.service.generation;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.dto.GenerationJobDTO;
+import com.spring.ragchatservice.dto.GenerationStatus;
+import com.spring.ragchatservice.service.ChatMessageService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of workers that take jobs off the {@link GenerationJobQueue}, call the model and store
+ * the reply. A database connection is only borrowed for the context reads and the final insert,
+ * never for the duration of the model call. On shutdown, jobs interrupted mid-generation are
+ * handed back to the queue rather than left RUNNING.
+ */
+@Component
+@Slf4j
+public class GenerationWorker {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+
+    private final GenerationJobQueue queue;
+    private final ChatMessageService chatMessageService;
+    private final int workers;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    public GenerationWorker(GenerationJobQueue queue,
+                            ChatMessageService chatMessageService,
+                            @Value("${app.generation.workers:4}") int workers) {
+        this.queue = queue;
+        this.chatMessageService = chatMessageService;
+        this.workers = workers;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        running = true;
+        executor = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("ai-generation-", 0).factory());
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::run);
+        }
+        log.info("Started {} AI generation workers", workers);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+            if (!executor.awaitTermination(POLL_TIMEOUT.toMillis() * 2, TimeUnit.MILLISECONDS)) {
+                // Their shared jobs stay pending in Redis and are claimed by another node once idle
+                log.warn("AI generation workers did not stop in time");
+            }
+        }
+        queue.failLocal();
+    }
+
+    private void run() {
+        while (running) {
+            GenerationJob job;
+            try {
+                job = queue.poll(POLL_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (job != null) {
+                process(job);
+            }
+        }
+    }
+
+    private void process(GenerationJob job) {
+        GenerationJobDTO previous = queue.getStatus(job.messageId());
+        if (previous != null && previous.getStatus() == GenerationStatus.COMPLETED) {
+            // Redelivered after a worker stored the reply but could not acknowledge the job
+            queue.complete(job);
+            return;
+        }
+
+        queue.updateStatus(new GenerationJobDTO(job.messageId(), job.sessionId(), GenerationStatus.RUNNING, null, null));
+        try {
+            ChatMessageDTO reply = chatMessageService.generateReply(job);
+            queue.updateStatus(new GenerationJobDTO(job.messageId(), job.sessionId(), GenerationStatus.COMPLETED, reply, null));
+        } catch (RuntimeException e) {
+            if (!running) {
+                log.info("Returning reply generation for message {} to the queue on shutdown", job.messageId());
+                queue.requeue(job);
+                return;
+            }
+            log.error("Reply generation failed for message {}", job.messageId(), e);
+            queue.updateStatus(new GenerationJobDTO(job.messageId(), job.sessionId(), GenerationStatus.FAILED, null, e.getMessage()));
+        }
+        queue.complete(job);
+    }
+}
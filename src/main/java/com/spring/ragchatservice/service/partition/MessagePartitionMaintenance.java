@@ -0,0 +1,166 @@
+package com.spring.ragchatservice.service.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of chat_messages ahead of the clock and retires old ones. Partitions
+ * for the next few months are created in advance, and with a retention set, partitions that end
+ * before it are detached (and optionally dropped) so they stop costing index maintenance and vacuum.
+ * Runs on one node at a time, guarded by a Postgres advisory lock.
+ */
+@Component
+@Slf4j
+public class MessagePartitionMaintenance {
+
+    private static final String TABLE = "chat_messages";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Bounds come back null for MINVALUE / MAXVALUE, as on the partition holding pre-partitioning rows
+    private static final String LIST_PARTITIONS =
+            "SELECT c.relname, i.inhdetachpending, " +
+            "substring(pg_get_expr(c.relpartbound, c.oid) from 'FROM \\(''([^'']+)''\\)')::timestamptz, " +
+            "substring(pg_get_expr(c.relpartbound, c.oid) from 'TO \\(''([^'']+)''\\)')::timestamptz " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = ?::regclass";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final boolean dropDetached;
+
+    public MessagePartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                       @Value("${app.messages.partitions.enabled:true}") boolean enabled,
+                                       @Value("${app.messages.partitions.premake-months:3}") int premakeMonths,
+                                       @Value("${app.messages.partitions.retention-months:0}") int retentionMonths,
+                                       @Value("${app.messages.partitions.drop-detached:false}") boolean dropDetached) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.dropDetached = dropDetached;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.messages.partitions.maintenance-cron:0 17 3 * * *}", zone = "UTC")
+    void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((Connection connection) -> {
+                if (!tryLock(connection, true)) {
+                    log.debug("Partition maintenance already running on another node");
+                    return null;
+                }
+                try {
+                    maintain(connection, YearMonth.now(ZoneOffset.UTC));
+                } finally {
+                    tryLock(connection, false);
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Chat message partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    void maintain(Connection connection, YearMonth current) throws SQLException {
+        List<Partition> partitions = listPartitions(connection);
+
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = current.plusMonths(i);
+            Instant from = start(month);
+            if (partitions.stream().noneMatch(partition -> partition.contains(from))) {
+                execute(connection, String.format(
+                        "CREATE TABLE IF NOT EXISTS %s_p%s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                        TABLE, month.format(SUFFIX), TABLE, from, start(month.plusMonths(1))));
+                log.info("Created partition {}_p{}", TABLE, month.format(SUFFIX));
+            }
+        }
+
+        if (retentionMonths <= 0) {
+            return;
+        }
+        Instant cutoff = start(current.minusMonths(retentionMonths));
+        for (Partition partition : partitions) {
+            if (partition.detachPending()) {
+                // A concurrent detach interrupted by a crash or cancel has to be finalized first
+                execute(connection, "ALTER TABLE " + TABLE + " DETACH PARTITION " + partition.name() + " FINALIZE");
+            } else if (partition.upperBound() != null && !partition.upperBound().isAfter(cutoff)) {
+                execute(connection, "ALTER TABLE " + TABLE + " DETACH PARTITION " + partition.name() + " CONCURRENTLY");
+            } else {
+                continue;
+            }
+            log.info("Detached partition {} (retention {} months)", partition.name(), retentionMonths);
+            if (dropDetached) {
+                execute(connection, "DROP TABLE " + partition.name());
+                log.info("Dropped partition {}", partition.name());
+            }
+        }
+    }
+
+    private List<Partition> listPartitions(Connection connection) throws SQLException {
+        List<Partition> partitions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(LIST_PARTITIONS)) {
+            statement.setString(1, TABLE);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    partitions.add(new Partition(rs.getString(1), rs.getBoolean(2),
+                            toInstant(rs.getTimestamp(3)), toInstant(rs.getTimestamp(4))));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private static boolean tryLock(Connection connection, boolean lock) throws SQLException {
+        String sql = lock
+                ? "SELECT pg_try_advisory_lock(hashtext('" + TABLE + "_partitions'))"
+                : "SELECT pg_advisory_unlock(hashtext('" + TABLE + "_partitions'))";
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    private record Partition(String name, boolean detachPending, Instant lowerBound, Instant upperBound) {
+
+        boolean contains(Instant instant) {
+            return (lowerBound == null || !lowerBound.isAfter(instant)) && (upperBound == null || upperBound.isAfter(instant));
+        }
+    }
+}
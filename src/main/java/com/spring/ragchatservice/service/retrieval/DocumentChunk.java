@@ -0,0 +1,4 @@
+package com.spring.ragchatservice.service.retrieval;
+
+public record DocumentChunk(String documentId, int chunkIndex, String content) {
+}
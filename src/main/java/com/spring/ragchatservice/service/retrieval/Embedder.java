@@ -0,0 +1,16 @@
+package com.spring.ragchatservice.service.retrieval;
+
+public interface Embedder {
+
+    /**
+     * @return Length of the vectors produced by {@link #embed(String)}
+     */
+    int dimension();
+
+    /**
+     * Embed text into a unit-length vector, so that cosine similarity is a plain dot product.
+     * @param text The text to embed
+     * @return L2-normalised embedding of {@link #dimension()} floats
+     */
+    float[] embed(String text);
+}
@@ -0,0 +1,82 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local, dependency-free embedder using signed feature hashing of word unigrams and bigrams.
+ * Good enough for lexical-semantic recall without a network hop; swap in a model-backed
+ * {@link Embedder} bean marked {@code @Primary} to replace it.
+ */
+@Component
+public class HashingEmbedder implements Embedder {
+
+    private static final float BIGRAM_WEIGHT = 0.5f;
+
+    private final int dimension;
+
+    public HashingEmbedder(@Value("${app.retrieval.embedding-dimension:384}") int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimension];
+        String previous = null;
+
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = text.substring(start, i).toLowerCase();
+                accumulate(vector, token.hashCode(), 1f);
+                if (previous != null) {
+                    accumulate(vector, 31 * previous.hashCode() + token.hashCode(), BIGRAM_WEIGHT);
+                }
+                previous = token;
+                start = -1;
+            }
+        }
+
+        normalize(vector);
+        return vector;
+    }
+
+    private void accumulate(float[] vector, int hash, float weight) {
+        int mixed = mix(hash);
+        int bucket = Math.floorMod(mixed, dimension);
+        vector[bucket] += (mix(mixed) & 1) == 0 ? weight : -weight;
+    }
+
+    private static int mix(int h) {
+        // murmur3 finaliser
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static void normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.spring.ragchatservice.service.retrieval;
+
+/**
+ * Read access to a layered HNSW graph, whether it is being built in memory or mapped from disk.
+ */
+interface HnswGraph {
+
+    int size();
+
+    int entryPoint();
+
+    int maxLevel();
+
+    /**
+     * @return Largest neighbour list of any level, i.e. the buffer size {@link #neighbours} needs
+     */
+    int maxNeighbours();
+
+    float similarity(float[] query, int node);
+
+    /**
+     * Copies the neighbours of {@code node} on {@code level} into {@code into}.
+     * @return Number of neighbours copied
+     */
+    int neighbours(int node, int level, int[] into);
+}
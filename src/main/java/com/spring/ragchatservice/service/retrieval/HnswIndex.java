@@ -0,0 +1,146 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * In-memory HNSW graph builder over unit-length vectors, scored by cosine similarity.
+ * Vectors live off-heap; the layered neighbour lists stay on-heap until the graph is written
+ * out as a {@link MappedSegment}. Not thread-safe.
+ */
+final class HnswIndex implements HnswGraph {
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final OffHeapVectors vectors;
+    private final List<int[][]> links = new ArrayList<>(); // per node, per level: [count, neighbours...]
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(int dimension, int m, int efConstruction) {
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = new OffHeapVectors(dimension);
+    }
+
+    /**
+     * @return Node id of the inserted vector; ids are dense and assigned in insertion order
+     */
+    int add(float[] vector) {
+        int node = vectors.add(vector);
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        links.add(nodeLinks);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int[] buffer = new int[maxM0];
+        HnswSearch.Neighbour nearest = new HnswSearch.Neighbour(entryPoint, HnswSearch.distance(this, vector, entryPoint));
+        for (int l = maxLevel; l > level; l--) {
+            nearest = HnswSearch.searchLayer(this, vector, nearest, 1, l, buffer).peek();
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<HnswSearch.Neighbour> candidates = HnswSearch.nearestFirst(
+                    HnswSearch.searchLayer(this, vector, nearest, efConstruction, l, buffer));
+            int limit = l == 0 ? maxM0 : m;
+            for (int i = 0; i < Math.min(m, candidates.size()); i++) {
+                int neighbour = candidates.get(i).node();
+                append(nodeLinks[l], neighbour);
+                link(neighbour, node, l, limit);
+            }
+            nearest = candidates.get(0);
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+        return node;
+    }
+
+    @Override
+    public int size() {
+        return vectors.size();
+    }
+
+    @Override
+    public int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    public int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    public int maxNeighbours() {
+        return maxM0;
+    }
+
+    @Override
+    public float similarity(float[] query, int node) {
+        return vectors.dot(query, node);
+    }
+
+    @Override
+    public int neighbours(int node, int level, int[] into) {
+        int[] row = links.get(node)[level];
+        System.arraycopy(row, 1, into, 0, row[0]);
+        return row[0];
+    }
+
+    int m() {
+        return m;
+    }
+
+    int levelOf(int node) {
+        return links.get(node).length - 1;
+    }
+
+    float[] vector(int node) {
+        return vectors.get(node);
+    }
+
+    private void link(int from, int to, int level, int limit) {
+        int[] neighbours = links.get(from)[level];
+        if (neighbours[0] < limit) {
+            append(neighbours, to);
+            return;
+        }
+
+        // Full: keep the closest `limit` of the existing neighbours plus the new one
+        float[] origin = vectors.get(from);
+        PriorityQueue<HnswSearch.Neighbour> kept = new PriorityQueue<>(HnswSearch.NEAREST_FIRST.reversed());
+        kept.add(new HnswSearch.Neighbour(to, HnswSearch.distance(this, origin, to)));
+        for (int i = 1; i <= neighbours[0]; i++) {
+            kept.add(new HnswSearch.Neighbour(neighbours[i], HnswSearch.distance(this, origin, neighbours[i])));
+        }
+        kept.poll();
+
+        neighbours[0] = 0;
+        for (HnswSearch.Neighbour neighbour : kept) {
+            append(neighbours, neighbour.node());
+        }
+    }
+
+    private static void append(int[] neighbours, int node) {
+        neighbours[++neighbours[0]] = node;
+    }
+}
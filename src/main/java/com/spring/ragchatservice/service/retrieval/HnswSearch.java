@@ -0,0 +1,86 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Best-first HNSW search shared by the in-memory builder and the memory-mapped segments.
+ */
+final class HnswSearch {
+
+    static final Comparator<Neighbour> NEAREST_FIRST = Comparator.comparingDouble(Neighbour::distance);
+
+    private HnswSearch() {
+    }
+
+    /**
+     * @return Up to {@code k} approximate nearest neighbours, nearest first
+     */
+    static List<Neighbour> search(HnswGraph graph, float[] query, int k, int ef) {
+        if (graph.size() == 0) {
+            return List.of();
+        }
+        int[] buffer = new int[graph.maxNeighbours()];
+        Neighbour nearest = new Neighbour(graph.entryPoint(), distance(graph, query, graph.entryPoint()));
+        for (int level = graph.maxLevel(); level > 0; level--) {
+            nearest = searchLayer(graph, query, nearest, 1, level, buffer).peek();
+        }
+        List<Neighbour> candidates = nearestFirst(searchLayer(graph, query, nearest, Math.max(ef, k), 0, buffer));
+        return candidates.size() > k ? candidates.subList(0, k) : candidates;
+    }
+
+    /**
+     * Best-first search of one layer; returns up to {@code ef} closest nodes, farthest on top.
+     */
+    static PriorityQueue<Neighbour> searchLayer(HnswGraph graph, float[] query, Neighbour entry,
+                                                int ef, int level, int[] buffer) {
+        BitSet visited = new BitSet(graph.size());
+        PriorityQueue<Neighbour> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Neighbour> results = new PriorityQueue<>(NEAREST_FIRST.reversed());
+
+        visited.set(entry.node());
+        candidates.add(entry);
+        results.add(entry);
+
+        while (!candidates.isEmpty()) {
+            Neighbour current = candidates.poll();
+            if (results.size() >= ef && current.distance() > results.peek().distance()) {
+                break;
+            }
+            int count = graph.neighbours(current.node(), level, buffer);
+            for (int i = 0; i < count; i++) {
+                int node = buffer[i];
+                if (visited.get(node)) {
+                    continue;
+                }
+                visited.set(node);
+                float distance = distance(graph, query, node);
+                if (results.size() < ef || distance < results.peek().distance()) {
+                    Neighbour neighbour = new Neighbour(node, distance);
+                    candidates.add(neighbour);
+                    results.add(neighbour);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    static List<Neighbour> nearestFirst(PriorityQueue<Neighbour> farthestFirst) {
+        List<Neighbour> drained = new ArrayList<>(farthestFirst);
+        drained.sort(NEAREST_FIRST);
+        return drained;
+    }
+
+    static float distance(HnswGraph graph, float[] query, int node) {
+        return 1 - graph.similarity(query, node);
+    }
+
+    record Neighbour(int node, float distance) {
+    }
+}
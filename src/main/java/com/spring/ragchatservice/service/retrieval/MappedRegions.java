@@ -0,0 +1,93 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only little-endian mapping of a file of any size, addressed by long offsets. A single
+ * {@link MappedByteBuffer} stops at 2GB, so the file is mapped as consecutive regions of
+ * {@value #REGION_BYTES} bytes and reads that cross a region boundary are stitched together.
+ */
+final class MappedRegions {
+
+    static final int REGION_BYTES = 1 << 30;
+
+    private final ByteBuffer[] regions;
+    private final int regionBytes;
+    private final long size;
+
+    private MappedRegions(ByteBuffer[] regions, int regionBytes, long size) {
+        this.regions = regions;
+        this.regionBytes = regionBytes;
+        this.size = size;
+    }
+
+    static MappedRegions map(Path file) throws IOException {
+        return map(file, REGION_BYTES);
+    }
+
+    static MappedRegions map(Path file, int regionBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer[] regions = new ByteBuffer[(int) Math.max(1, (size + regionBytes - 1) / regionBytes)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i * regionBytes;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionBytes, size - start))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new MappedRegions(regions, regionBytes, size);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    int getInt(long position) {
+        ByteBuffer region = regionFor(position, Integer.BYTES);
+        return region != null
+                ? region.getInt(offsetIn(position))
+                : read(position, Integer.BYTES).getInt(0);
+    }
+
+    long getLong(long position) {
+        ByteBuffer region = regionFor(position, Long.BYTES);
+        return region != null
+                ? region.getLong(offsetIn(position))
+                : read(position, Long.BYTES).getLong(0);
+    }
+
+    void get(long position, byte[] into) {
+        int copied = 0;
+        while (copied < into.length) {
+            ByteBuffer region = regions[(int) ((position + copied) / regionBytes)];
+            int offset = offsetIn(position + copied);
+            int length = Math.min(into.length - copied, region.capacity() - offset);
+            region.get(offset, into, copied, length);
+            copied += length;
+        }
+    }
+
+    /**
+     * @return The region holding all of {@code [position, position + bytes)}, or null if the range straddles two
+     */
+    private ByteBuffer regionFor(long position, int bytes) {
+        ByteBuffer region = regions[(int) (position / regionBytes)];
+        return offsetIn(position) + bytes <= region.capacity() ? region : null;
+    }
+
+    private ByteBuffer read(long position, int bytes) {
+        byte[] value = new byte[bytes];
+        get(position, value);
+        return ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private int offsetIn(long position) {
+        return (int) (position % regionBytes);
+    }
+}
@@ -0,0 +1,310 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable, memory-mapped index segment made of three little-endian files:
+ * <ul>
+ *     <li>{@code .vec}: 32-byte header, then one fixed-width float32 row per node</li>
+ *     <li>{@code .hnsw}: 32-byte header, fixed-width level-0 adjacency rows
+ *     {@code [count, neighbours...]}, then per upper level {@code [nodes]} rows of
+ *     {@code [node, count, neighbours...]}</li>
+ *     <li>{@code .chunks}: 32-byte header, length-prefixed UTF-8 chunk records, then a table of
+ *     record offsets</li>
+ * </ul>
+ * Opening a segment only maps the files and indexes the (small) upper levels, so a restarted
+ * process serves queries straight from the shared page cache.
+ * <p>
+ * The vector and graph files are addressed by int and each mapped as one buffer, which
+ * {@link #maxVectors} keeps below 2GB. The chunks file holds free text of any length and is
+ * read through long offsets.
+ * <p>
+ * A segment is reference counted: the index holds one reference while the segment is live and
+ * every search holds one while it reads. Its files are deleted when the last reference is
+ * released after it was retired. The mappings themselves are only dropped when the buffers are
+ * garbage collected, which POSIX tolerates for an unlinked file but Windows does not (the delete
+ * fails and the files are removed as unlisted on the next open), so this is only safe on Linux.
+ */
+@Slf4j
+final class MappedSegment implements HnswGraph {
+
+    static final String VECTORS = ".vec";
+    static final String GRAPH = ".hnsw";
+    static final String CHUNKS = ".chunks";
+
+    private static final int VECTORS_MAGIC = 0x43455652; // "RVEC"
+    private static final int GRAPH_MAGIC = 0x57534E48;   // "HNSW"
+    private static final int CHUNKS_MAGIC = 0x4B4E4843;  // "CHNK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    private final Path directory;
+    private final String name;
+    private final int dimension;
+    private final int count;
+    private final int m;
+    private final int maxM0;
+    private final int entryPoint;
+    private final int maxLevel;
+    private final FloatBuffer vectors;
+    private final IntBuffer graph;
+    private final List<Map<Integer, Integer>> upperRows;
+    private final MappedRegions chunks;
+    private final long offsetsStart;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private MappedSegment(Path directory, String name, ByteBuffer vectorFile, ByteBuffer graphFile,
+                          MappedRegions chunkFile) {
+        this.directory = directory;
+        this.name = name;
+
+        checkHeader(vectorFile, VECTORS_MAGIC, name + VECTORS);
+        this.dimension = vectorFile.getInt(8);
+        this.count = vectorFile.getInt(12);
+        this.vectors = vectorFile.position(HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+
+        checkHeader(graphFile, GRAPH_MAGIC, name + GRAPH);
+        this.m = graphFile.getInt(12);
+        this.maxM0 = graphFile.getInt(16);
+        this.entryPoint = graphFile.getInt(20);
+        this.maxLevel = graphFile.getInt(24);
+        this.graph = graphFile.position(HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+        this.upperRows = new ArrayList<>(Math.max(maxLevel, 0));
+        int position = count * (maxM0 + 1);
+        for (int level = 1; level <= maxLevel; level++) {
+            int nodes = graph.get(position++);
+            Map<Integer, Integer> rows = new HashMap<>(nodes * 2);
+            for (int i = 0; i < nodes; i++) {
+                rows.put(graph.get(position), position + 1);
+                position += m + 2;
+            }
+            upperRows.add(rows);
+        }
+
+        if (chunkFile.getInt(0) != CHUNKS_MAGIC || chunkFile.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a version " + VERSION + " index file: " + name + CHUNKS);
+        }
+        this.chunks = chunkFile;
+        this.offsetsStart = chunkFile.getLong(16);
+    }
+
+    static MappedSegment open(Path directory, String name) throws IOException {
+        return new MappedSegment(directory, name,
+                map(directory.resolve(name + VECTORS)),
+                map(directory.resolve(name + GRAPH)),
+                MappedRegions.map(directory.resolve(name + CHUNKS)));
+    }
+
+    /**
+     * @return Most vectors a segment of this shape may hold while its vector and graph files stay
+     * addressable by int
+     */
+    static int maxVectors(int dimension, int m) {
+        // Level 0 rows plus, on average, well under one upper-level row per node
+        long graphBytes = (long) (2 * m + 1 + m + 2) * Integer.BYTES;
+        long vectorBytes = (long) dimension * Float.BYTES;
+        return (int) ((Integer.MAX_VALUE - HEADER_BYTES) / Math.max(graphBytes, vectorBytes));
+    }
+
+    /**
+     * Writes a built graph and its chunks as segment {@code name}. The chunks file is written
+     * last; a segment only becomes live once it is listed in the manifest.
+     */
+    static void write(Path directory, String name, HnswIndex index, int dimension,
+                      List<DocumentChunk> chunks) throws IOException {
+        int count = index.size();
+
+        try (SegmentFileWriter out = new SegmentFileWriter(directory.resolve(name + VECTORS))) {
+            out.putInt(VECTORS_MAGIC).putInt(VERSION).putInt(dimension).putInt(count)
+                    .putLong(0).putLong(0);
+            for (int node = 0; node < count; node++) {
+                out.putFloats(index.vector(node));
+            }
+            out.commit();
+        }
+
+        int m = index.m();
+        int maxM0 = index.maxNeighbours();
+        int[] buffer = new int[maxM0];
+        try (SegmentFileWriter out = new SegmentFileWriter(directory.resolve(name + GRAPH))) {
+            out.putInt(GRAPH_MAGIC).putInt(VERSION).putInt(count).putInt(m)
+                    .putInt(maxM0).putInt(index.entryPoint()).putInt(index.maxLevel()).putInt(0);
+            for (int node = 0; node < count; node++) {
+                putRow(out, buffer, index.neighbours(node, 0, buffer), maxM0);
+            }
+            for (int level = 1; level <= index.maxLevel(); level++) {
+                List<Integer> nodes = new ArrayList<>();
+                for (int node = 0; node < count; node++) {
+                    if (index.levelOf(node) >= level) {
+                        nodes.add(node);
+                    }
+                }
+                out.putInt(nodes.size());
+                for (int node : nodes) {
+                    out.putInt(node);
+                    putRow(out, buffer, index.neighbours(node, level, buffer), m);
+                }
+            }
+            out.commit();
+        }
+
+        try (SegmentFileWriter out = new SegmentFileWriter(directory.resolve(name + CHUNKS))) {
+            out.putInt(CHUNKS_MAGIC).putInt(VERSION).putInt(chunks.size()).putInt(0)
+                    .putLong(0).putLong(0);
+            long[] offsets = new long[chunks.size()];
+            for (int i = 0; i < chunks.size(); i++) {
+                DocumentChunk chunk = chunks.get(i);
+                offsets[i] = out.position();
+                byte[] documentId = chunk.documentId().getBytes(StandardCharsets.UTF_8);
+                byte[] content = chunk.content().getBytes(StandardCharsets.UTF_8);
+                out.putInt(documentId.length).putBytes(documentId)
+                        .putInt(chunk.chunkIndex())
+                        .putInt(content.length).putBytes(content);
+            }
+            long offsetsStart = out.position();
+            for (long offset : offsets) {
+                out.putLong(offset);
+            }
+            out.patchLong(16, offsetsStart);
+            out.commit();
+        }
+    }
+
+    static void delete(Path directory, String name) throws IOException {
+        Files.deleteIfExists(directory.resolve(name + CHUNKS));
+        Files.deleteIfExists(directory.resolve(name + GRAPH));
+        Files.deleteIfExists(directory.resolve(name + VECTORS));
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * Takes a reference for a reader.
+     *
+     * @return false if the segment was already retired and released, i.e. the caller's snapshot is stale
+     */
+    boolean retain() {
+        int current;
+        do {
+            current = references.get();
+            if (current == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Drops a reference; the files are deleted once the index and every reader have released the segment.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            try {
+                delete(directory, name);
+            } catch (IOException e) {
+                log.warn("Failed to delete retired segment {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    DocumentChunk chunk(int node) {
+        long position = chunks.getLong(offsetsStart + (long) node * Long.BYTES);
+        byte[] documentId = new byte[chunks.getInt(position)];
+        chunks.get(position + Integer.BYTES, documentId);
+        position += Integer.BYTES + documentId.length;
+        int chunkIndex = chunks.getInt(position);
+        byte[] content = new byte[chunks.getInt(position + Integer.BYTES)];
+        chunks.get(position + 2 * Integer.BYTES, content);
+        return new DocumentChunk(new String(documentId, StandardCharsets.UTF_8), chunkIndex,
+                new String(content, StandardCharsets.UTF_8));
+    }
+
+    float[] vector(int node) {
+        float[] vector = new float[dimension];
+        vectors.get(node * dimension, vector);
+        return vector;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    public int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    public int maxNeighbours() {
+        return maxM0;
+    }
+
+    @Override
+    public float similarity(float[] query, int node) {
+        int offset = node * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * vectors.get(offset + i);
+        }
+        return sum;
+    }
+
+    @Override
+    public int neighbours(int node, int level, int[] into) {
+        int row = level == 0 ? node * (maxM0 + 1) : upperRows.get(level - 1).get(node);
+        int neighbours = graph.get(row);
+        graph.get(row + 1, into, 0, neighbours);
+        return neighbours;
+    }
+
+    private static void putRow(SegmentFileWriter out, int[] neighbours, int count, int width) throws IOException {
+        out.putInt(count);
+        for (int i = 0; i < width; i++) {
+            out.putInt(i < count ? neighbours[i] : 0);
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    private static void checkHeader(ByteBuffer file, int magic, String fileName) {
+        if (file.getInt(0) != magic || file.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a version " + VERSION + " index file: " + fileName);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store of fixed-width float32 vectors held outside the Java heap, in direct
+ * buffers of {@value #BLOCK_VECTORS} rows so that growth never copies existing rows.
+ * Not thread-safe; {@link HnswIndex} guards it.
+ */
+final class OffHeapVectors {
+
+    private static final int BLOCK_VECTORS = 4096;
+
+    private final int dimension;
+    private final List<FloatBuffer> blocks = new ArrayList<>();
+    private int size;
+
+    OffHeapVectors(int dimension) {
+        this.dimension = dimension;
+    }
+
+    int add(float[] vector) {
+        if (size % BLOCK_VECTORS == 0) {
+            blocks.add(ByteBuffer.allocateDirect(BLOCK_VECTORS * dimension * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer());
+        }
+        blocks.get(size / BLOCK_VECTORS).put((size % BLOCK_VECTORS) * dimension, vector);
+        return size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    float dot(float[] query, int node) {
+        FloatBuffer block = blocks.get(node / BLOCK_VECTORS);
+        int offset = (node % BLOCK_VECTORS) * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * block.get(offset + i);
+        }
+        return sum;
+    }
+
+    float[] get(int node) {
+        float[] vector = new float[dimension];
+        blocks.get(node / BLOCK_VECTORS).get((node % BLOCK_VECTORS) * dimension, vector);
+        return vector;
+    }
+}
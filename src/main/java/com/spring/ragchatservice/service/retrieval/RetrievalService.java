@@ -0,0 +1,122 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import com.spring.ragchatservice.dto.RetrievedChunkDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retrieval stage of the RAG pipeline: chunks and embeds documents into an in-process HNSW
+ * index and answers top-k similarity queries without leaving the JVM. The index is persisted
+ * as memory-mapped segments, so a restart only re-maps files instead of re-embedding.
+ */
+@Service
+@Slf4j
+public class RetrievalService {
+
+    private final TextChunker textChunker;
+    private final Embedder embedder;
+    private final SegmentedIndex index;
+    private final int compactionMinSegments;
+    private final int topK;
+    private final int efSearch;
+    private final float minScore;
+
+    public RetrievalService(TextChunker textChunker,
+                            Embedder embedder,
+                            @Value("${app.retrieval.hnsw.m:16}") int m,
+                            @Value("${app.retrieval.hnsw.ef-construction:100}") int efConstruction,
+                            @Value("${app.retrieval.hnsw.ef-search:64}") int efSearch,
+                            @Value("${app.retrieval.top-k:4}") int topK,
+                            @Value("${app.retrieval.min-score:0.2}") float minScore,
+                            @Value("${app.retrieval.index.dir:data/retrieval-index}") Path indexDirectory,
+                            @Value("${app.retrieval.index.compaction.min-segments:8}") int compactionMinSegments,
+                            @Value("${app.retrieval.index.compaction.max-segment-vectors:1000000}") int maxSegmentVectors) {
+        this.textChunker = textChunker;
+        this.embedder = embedder;
+        this.index = new SegmentedIndex(indexDirectory, embedder.dimension(), m, efConstruction, maxSegmentVectors);
+        this.compactionMinSegments = compactionMinSegments;
+        this.topK = topK;
+        this.efSearch = efSearch;
+        this.minScore = minScore;
+    }
+
+    @PostConstruct
+    void openIndex() {
+        try {
+            index.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open retrieval index", e);
+        }
+    }
+
+    public int ingest(String documentId, String content) {
+        log.info("Ingesting document: {}", documentId);
+        List<String> pieces = textChunker.chunk(content);
+        List<DocumentChunk> chunks = new ArrayList<>(pieces.size());
+        List<float[]> vectors = new ArrayList<>(pieces.size());
+        for (int i = 0; i < pieces.size(); i++) {
+            chunks.add(new DocumentChunk(documentId, i, pieces.get(i)));
+            vectors.add(embedder.embed(pieces.get(i)));
+        }
+        try {
+            index.append(chunks, vectors);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist document " + documentId, e);
+        }
+        return pieces.size();
+    }
+
+    public List<RetrievedChunkDTO> retrieve(String query, int k) {
+        List<SegmentedIndex.ScoredChunk> results = index.search(embedder.embed(query), k, efSearch);
+        List<RetrievedChunkDTO> retrieved = new ArrayList<>(results.size());
+        for (SegmentedIndex.ScoredChunk result : results) {
+            DocumentChunk chunk = result.chunk();
+            if (result.score() >= minScore) {
+                retrieved.add(new RetrievedChunkDTO(chunk.documentId(), chunk.chunkIndex(), chunk.content(), result.score()));
+            }
+        }
+        return retrieved;
+    }
+
+    @Scheduled(fixedDelayString = "${app.retrieval.index.compaction.interval-ms:60000}")
+    void compactIndex() {
+        try {
+            while (index.compact(compactionMinSegments)) {
+                log.debug("Retrieval index now has {} segments", index.segmentCount());
+            }
+        } catch (IOException e) {
+            log.warn("Retrieval index compaction failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The top-k chunks for the query joined into a single context block, or null if nothing matched
+     */
+    public String retrieveContext(String query) {
+        List<RetrievedChunkDTO> retrieved = retrieve(query, topK);
+        if (retrieved.isEmpty()) {
+            return null;
+        }
+        int length = 0;
+        for (RetrievedChunkDTO chunk : retrieved) {
+            length += chunk.getContent().length() + 2;
+        }
+        StringBuilder context = new StringBuilder(length);
+        for (RetrievedChunkDTO chunk : retrieved) {
+            if (!context.isEmpty()) {
+                context.append("\n\n");
+            }
+            context.append(chunk.getContent());
+        }
+        return context.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered little-endian writer for segment files. Writes go to a temporary file that is
+ * fsynced and atomically renamed into place on {@link #commit()}, so a crash never leaves a
+ * half-written file under the final name.
+ */
+public final class SegmentFileWriter implements Closeable {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+    private boolean committed;
+
+    public SegmentFileWriter(Path target) throws IOException {
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    public long position() {
+        return position;
+    }
+
+    public SegmentFileWriter putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+        return this;
+    }
+
+    public SegmentFileWriter putLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+        position += Long.BYTES;
+        return this;
+    }
+
+    public SegmentFileWriter putFloats(float[] values) throws IOException {
+        for (float value : values) {
+            ensure(Float.BYTES);
+            buffer.putFloat(value);
+        }
+        position += (long) values.length * Float.BYTES;
+        return this;
+    }
+
+    public SegmentFileWriter putBytes(byte[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), values.length - offset);
+            buffer.put(values, offset, length);
+            offset += length;
+        }
+        position += values.length;
+        return this;
+    }
+
+    /**
+     * Overwrites a long already written at {@code at}, e.g. a header field only known at the end.
+     */
+    public void patchLong(long at, long value) throws IOException {
+        flush();
+        ByteBuffer patch = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(value).flip();
+        while (patch.hasRemaining()) {
+            channel.write(patch, at + patch.position());
+        }
+    }
+
+    public void commit() throws IOException {
+        flush();
+        channel.force(true);
+        channel.close();
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        committed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
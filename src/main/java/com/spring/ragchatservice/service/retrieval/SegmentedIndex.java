@@ -0,0 +1,299 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Persistent vector index made of append-only {@link MappedSegment}s. Appends are group
+ * committed: whichever caller gets to seal first takes every append queued by then, writes
+ * them as one segment and publishes it by atomically rewriting the {@code MANIFEST}; files not
+ * listed there (e.g. left behind by a crash mid-write) are removed on open. Searches fan out
+ * over an immutable snapshot of the live segments, and compaction merges small segments in the
+ * background without blocking readers.
+ */
+@Slf4j
+final class SegmentedIndex {
+
+    private static final String MANIFEST = "MANIFEST";
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private final Path directory;
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final int maxSegmentVectors;
+    private final Object publishLock = new Object();
+    private final ReentrantLock sealLock = new ReentrantLock();
+    private final Queue<PendingAppend> appends = new ConcurrentLinkedQueue<>();
+
+    private volatile List<MappedSegment> segments = List.of();
+    private long nextSegment;
+
+    SegmentedIndex(Path directory, int dimension, int m, int efConstruction, int maxSegmentVectors) {
+        this.directory = directory;
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        // Keep the vector and graph files below the 2GB limit of a single MappedByteBuffer
+        this.maxSegmentVectors = Math.min(maxSegmentVectors, MappedSegment.maxVectors(dimension, m));
+    }
+
+    void open() throws IOException {
+        Files.createDirectories(directory);
+        Path manifest = directory.resolve(MANIFEST);
+        List<String> names = Files.exists(manifest) ? Files.readAllLines(manifest) : List.of();
+
+        List<MappedSegment> opened = new ArrayList<>(names.size());
+        for (String name : names) {
+            if (name.isBlank()) {
+                continue;
+            }
+            MappedSegment segment = MappedSegment.open(directory, name);
+            if (segment.dimension() != dimension) {
+                throw new IllegalStateException("Segment " + name + " has dimension " + segment.dimension()
+                        + " but the embedder produces " + dimension);
+            }
+            opened.add(segment);
+            nextSegment = Math.max(nextSegment, sequenceOf(name) + 1);
+        }
+        removeUnlisted(new HashSet<>(names));
+
+        synchronized (publishLock) {
+            segments = List.copyOf(opened);
+        }
+        log.info("Opened retrieval index at {} with {} segments and {} vectors", directory, opened.size(), size());
+    }
+
+    int size() {
+        int size = 0;
+        for (MappedSegment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Seals the chunks and their vectors, together with any appends queued concurrently, and
+     * returns once they are durable and visible to searches.
+     */
+    void append(List<DocumentChunk> chunks, List<float[]> vectors) throws IOException {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        PendingAppend pending = new PendingAppend(chunks, vectors, new CompletableFuture<>());
+        appends.add(pending);
+        sealLock.lock();
+        try {
+            // A previous holder may already have sealed this append along with its own
+            while (!pending.sealed().isDone()) {
+                sealQueued();
+            }
+        } finally {
+            sealLock.unlock();
+        }
+        try {
+            pending.sealed().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return Up to {@code k} chunks across all segments, most similar first
+     */
+    List<ScoredChunk> search(float[] query, int k, int ef) {
+        List<MappedSegment> snapshot = acquire();
+        try {
+            PriorityQueue<ScoredChunk> best = new PriorityQueue<>(Comparator.comparingDouble(ScoredChunk::score));
+            for (MappedSegment segment : snapshot) {
+                for (HnswSearch.Neighbour neighbour : HnswSearch.search(segment, query, k, ef)) {
+                    float score = 1 - neighbour.distance();
+                    if (best.size() < k || score > best.peek().score()) {
+                        best.add(new ScoredChunk(segment.chunk(neighbour.node()), score));
+                        if (best.size() > k) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+            List<ScoredChunk> results = new ArrayList<>(best);
+            results.sort(Comparator.comparingDouble(ScoredChunk::score).reversed());
+            return results;
+        } finally {
+            snapshot.forEach(MappedSegment::release);
+        }
+    }
+
+    /**
+     * Merges the smallest segments into one once there are at least {@code minSegments}. Vectors
+     * are copied from the mapped source files, so nothing is re-embedded.
+     *
+     * @return true if segments were merged
+     */
+    boolean compact(int minSegments) throws IOException {
+        List<MappedSegment> live = segments;
+        if (live.size() < Math.max(2, minSegments)) {
+            return false;
+        }
+
+        List<MappedSegment> sources = new ArrayList<>();
+        int total = 0;
+        for (MappedSegment segment : live.stream().sorted(Comparator.comparingInt(MappedSegment::size)).toList()) {
+            if (total + segment.size() > maxSegmentVectors) {
+                break;
+            }
+            sources.add(segment);
+            total += segment.size();
+        }
+        if (sources.size() < 2) {
+            return false;
+        }
+
+        HnswIndex graph = new HnswIndex(dimension, m, efConstruction);
+        List<DocumentChunk> chunks = new ArrayList<>(total);
+        for (MappedSegment source : sources) {
+            for (int node = 0; node < source.size(); node++) {
+                graph.add(source.vector(node));
+                chunks.add(source.chunk(node));
+            }
+        }
+        String name = newSegmentName();
+        MappedSegment.write(directory, name, graph, dimension, chunks);
+        publish(MappedSegment.open(directory, name), sources);
+
+        // Searches still reading a source hold a reference; the last one to finish deletes its files
+        for (MappedSegment source : sources) {
+            source.release();
+        }
+        log.info("Compacted {} segments into {} with {} vectors", sources.size(), name, total);
+        return true;
+    }
+
+    /**
+     * Writes every queued append, up to {@code maxSegmentVectors}, as one segment.
+     */
+    private void sealQueued() throws IOException {
+        List<PendingAppend> batch = new ArrayList<>();
+        HnswIndex graph = new HnswIndex(dimension, m, efConstruction);
+        List<DocumentChunk> chunks = new ArrayList<>();
+        for (PendingAppend next = appends.peek();
+             next != null && (batch.isEmpty() || chunks.size() + next.chunks().size() <= maxSegmentVectors);
+             next = appends.peek()) {
+            appends.poll();
+            batch.add(next);
+            chunks.addAll(next.chunks());
+            next.vectors().forEach(graph::add);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            String name = newSegmentName();
+            MappedSegment.write(directory, name, graph, dimension, chunks);
+            publish(MappedSegment.open(directory, name), List.of());
+            log.debug("Sealed {} appends into {} with {} vectors", batch.size(), name, chunks.size());
+        } catch (IOException | RuntimeException e) {
+            batch.forEach(pending -> pending.sealed().completeExceptionally(e));
+            return;
+        }
+        batch.forEach(pending -> pending.sealed().complete(null));
+    }
+
+    /**
+     * @return The live segments, each retained for the caller to release
+     */
+    private List<MappedSegment> acquire() {
+        while (true) {
+            List<MappedSegment> snapshot = segments;
+            int retained = 0;
+            while (retained < snapshot.size() && snapshot.get(retained).retain()) {
+                retained++;
+            }
+            if (retained == snapshot.size()) {
+                return snapshot;
+            }
+            // Compaction retired a segment after the snapshot was read; take the newer one
+            snapshot.subList(0, retained).forEach(MappedSegment::release);
+        }
+    }
+
+    private void publish(MappedSegment added, List<MappedSegment> removed) throws IOException {
+        synchronized (publishLock) {
+            List<MappedSegment> next = new ArrayList<>(segments.size() + 1);
+            for (MappedSegment segment : segments) {
+                if (!removed.contains(segment)) {
+                    next.add(segment);
+                }
+            }
+            next.add(added);
+            writeManifest(next);
+            segments = List.copyOf(next);
+        }
+    }
+
+    private void writeManifest(List<MappedSegment> live) throws IOException {
+        List<String> names = live.stream().map(MappedSegment::name).toList();
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temp, names);
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private String newSegmentName() {
+        synchronized (publishLock) {
+            return SEGMENT_PREFIX + String.format("%012d", nextSegment++);
+        }
+    }
+
+    private void removeUnlisted(Set<String> listed) throws IOException {
+        Set<Path> stale = new LinkedHashSet<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> {
+                String fileName = file.getFileName().toString();
+                if (!fileName.startsWith(SEGMENT_PREFIX)) {
+                    return fileName.equals(MANIFEST + ".tmp");
+                }
+                int extension = fileName.indexOf('.');
+                return extension < 0 || fileName.endsWith(".tmp") || !listed.contains(fileName.substring(0, extension));
+            }).forEach(stale::add);
+        }
+        for (Path file : stale) {
+            log.info("Removing unreferenced index file {}", file.getFileName());
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long sequenceOf(String name) {
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length()));
+    }
+
+    record ScoredChunk(DocumentChunk chunk, float score) {
+    }
+
+    private record PendingAppend(List<DocumentChunk> chunks, List<float[]> vectors, CompletableFuture<Void> sealed) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits documents into overlapping chunks of roughly {@code chunkSize} characters,
+ * breaking on sentence boundaries where possible.
+ */
+@Component
+public class TextChunker {
+
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?])\\s+|\\n{2,}");
+
+    private final int chunkSize;
+    private final int overlap;
+
+    public TextChunker(@Value("${app.retrieval.chunk-size:800}") int chunkSize,
+                       @Value("${app.retrieval.chunk-overlap:100}") int overlap) {
+        this.chunkSize = chunkSize;
+        this.overlap = Math.min(overlap, chunkSize / 2);
+    }
+
+    public List<String> chunk(String text) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder(chunkSize + overlap);
+
+        for (String sentence : SENTENCE_BREAK.split(text.strip())) {
+            // Sentences longer than a chunk are hard-split
+            for (int from = 0; from < sentence.length(); from += chunkSize) {
+                String piece = sentence.substring(from, Math.min(sentence.length(), from + chunkSize));
+                if (current.length() > 0 && current.length() + piece.length() + 1 > chunkSize) {
+                    chunks.add(current.toString());
+                    String tail = current.substring(Math.max(0, current.length() - overlap));
+                    current.setLength(0);
+                    current.append(tail);
+                }
+                if (current.length() > 0) {
+                    current.append(' ');
+                }
+                current.append(piece);
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,289 @@
+package com.spring.ragchatservice.service.writebehind;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.repository.ChatMessageBulkInserter;
+import com.spring.ragchatservice.service.context.ContextBlobStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.AutoClaimResult;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RStream;
+import org.redisson.api.RStreamAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamCreateGroupArgs;
+import org.redisson.api.stream.StreamReadGroupArgs;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the {@link MessageWriteBuffer} log into Postgres. Each poll takes up to a batch of entries
+ * and commits them with one multi-row INSERT, after storing any retrieved context they carry; only
+ * then are they acknowledged and dropped from Redis. Entries left unacknowledged by a node that died
+ * mid-batch are claimed by the survivors once idle, and re-inserting an already committed message is a no-op.
+ * <p>
+ * A message Postgres rejects outright (e.g. a value too long for its column) is moved to the
+ * {@value MessageWriteBuffer#DEAD_LETTER_KEY} stream with the error before its entry is acknowledged.
+ */
+@Component
+@Slf4j
+public class MessageFlusher {
+
+    private static final String GROUP = "chat-message-flushers";
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(1);
+    private static final int DEAD_LETTER_MAX_LENGTH = 100_000;
+    private static final String DEAD_LETTER_MESSAGE = "message";
+    private static final String DEAD_LETTER_ERROR = "error";
+
+    private final MessageWriteBuffer buffer;
+    private final RedissonClient redissonClient;
+    private final ChatMessageBulkInserter inserter;
+    private final ContextBlobStore contextBlobStore;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration pollTimeout;
+    private final Duration claimIdle;
+    private final String consumer = "flusher-" + UUID.randomUUID();
+    private final DistributionSummary batchSizes;
+    private final Timer commitTimer;
+    private ExecutorService executor;
+    private volatile boolean running;
+    private boolean groupCreated;
+
+    public MessageFlusher(MessageWriteBuffer buffer,
+                          RedissonClient redissonClient,
+                          ChatMessageBulkInserter inserter,
+                          ContextBlobStore contextBlobStore,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.messages.write-behind.enabled:false}") boolean enabled,
+                          @Value("${app.messages.write-behind.batch-size:500}") int batchSize,
+                          @Value("${app.messages.write-behind.poll-timeout:100ms}") Duration pollTimeout,
+                          @Value("${app.messages.write-behind.claim-idle:30s}") Duration claimIdle) {
+        this.buffer = buffer;
+        this.redissonClient = redissonClient;
+        this.inserter = inserter;
+        this.contextBlobStore = contextBlobStore;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.batchSize = Math.min(batchSize, ChatMessageBulkInserter.MAX_ROWS);
+        this.pollTimeout = pollTimeout;
+        this.claimIdle = claimIdle;
+        this.batchSizes = DistributionSummary.builder("chat.messages.flush.batch.size")
+                .description("Messages committed per write-behind flush")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("chat.messages.flush")
+                .description("Time to commit one write-behind batch")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        executor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("message-flusher").factory());
+        executor.execute(this::run);
+        log.info("Started write-behind message flusher {}", consumer);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (executor != null) {
+            // Let the batch in hand commit; anything not yet read stays in the log for the next start
+            executor.shutdown();
+            if (!executor.awaitTermination(pollTimeout.toMillis() + RETRY_BACKOFF.toMillis() * 5, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void run() {
+        RStream<String, ChatMessageDTO> stream = buffer.stream();
+        long nextClaim = 0;
+        StreamMessageId claimFrom = StreamMessageId.MIN;
+        while (running) {
+            try {
+                createGroup(stream);
+                Map<StreamMessageId, Map<String, ChatMessageDTO>> entries;
+                if (System.nanoTime() - nextClaim >= 0) {
+                    AutoClaimResult<String, ChatMessageDTO> claimed = stream.autoClaim(GROUP, consumer,
+                            claimIdle.toMillis(), TimeUnit.MILLISECONDS, claimFrom, batchSize);
+                    entries = claimed.getMessages();
+                    claimFrom = claimed.getNextId();
+                    if (StreamMessageId.MIN.equals(claimFrom) || entries.isEmpty()) {
+                        // Scanned the whole pending list; look again after another idle period
+                        claimFrom = StreamMessageId.MIN;
+                        nextClaim = System.nanoTime() + claimIdle.toNanos();
+                    }
+                } else {
+                    entries = stream.readGroup(GROUP, consumer, StreamReadGroupArgs.neverDelivered()
+                            .count(batchSize)
+                            .timeout(pollTimeout));
+                }
+                if (!entries.isEmpty()) {
+                    flush(entries);
+                }
+            } catch (RedisException e) {
+                log.warn("Write-behind log unavailable: {}", e.getMessage());
+                pause();
+            }
+        }
+    }
+
+    private void createGroup(RStream<String, ChatMessageDTO> stream) {
+        if (groupCreated) {
+            return;
+        }
+        try {
+            stream.createGroup(StreamCreateGroupArgs.name(GROUP).id(StreamMessageId.ALL).makeStream());
+        } catch (RedisException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+        groupCreated = true;
+    }
+
+    private void flush(Map<StreamMessageId, Map<String, ChatMessageDTO>> entries) {
+        List<ChatMessageDTO> messages = new ArrayList<>(entries.size());
+        for (Map<String, ChatMessageDTO> fields : entries.values()) {
+            ChatMessageDTO message = fields.get(MessageWriteBuffer.FIELD);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+
+        // Retried until it commits: the entries stay unacknowledged, so nothing is lost meanwhile
+        Map<ChatMessageDTO, String> rejected = new LinkedHashMap<>();
+        while (!messages.isEmpty() && !commit(messages, rejected)) {
+            if (!running) {
+                return;
+            }
+            rejected.clear();
+            pause();
+        }
+        batchSizes.record(messages.size());
+        deadLetter(rejected);
+        acknowledge(entries.keySet(), messages);
+    }
+
+    /**
+     * @param rejected Filled with the messages Postgres refused and why, if the batch had to go row by row
+     * @return false if the commit failed transiently and the whole batch must be retried
+     */
+    private boolean commit(List<ChatMessageDTO> messages, Map<ChatMessageDTO, String> rejected) {
+        try {
+            commitTimer.record(() -> {
+                contextBlobStore.saveAll(messages);
+                inserter.insert(messages);
+            });
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // One bad row fails the statement; commit the rest one by one and set the offenders aside
+            log.warn("Write-behind batch of {} rejected, retrying row by row: {}", messages.size(), e.getMessage());
+        } catch (DataAccessException e) {
+            log.warn("Write-behind commit of {} messages failed, retrying: {}", messages.size(), e.getMessage());
+            return false;
+        }
+
+        for (ChatMessageDTO message : messages) {
+            try {
+                contextBlobStore.saveAll(List.of(message));
+                inserter.insert(List.of(message));
+            } catch (DataIntegrityViolationException e) {
+                rejected.put(message, String.valueOf(e.getMostSpecificCause().getMessage()));
+            } catch (DataAccessException e) {
+                // Rows committed so far are re-inserted as no-ops on the retry
+                log.warn("Write-behind row-by-row commit failed, retrying the batch: {}", e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves rejected messages to the dead-letter stream. Throws if Redis is unavailable, so their
+     * entries stay unacknowledged and are retried once claimed.
+     */
+    private void deadLetter(Map<ChatMessageDTO, String> rejected) {
+        if (rejected.isEmpty()) {
+            return;
+        }
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        RStreamAsync<String, String> deadLetters = batch.getStream(MessageWriteBuffer.DEAD_LETTER_KEY, StringCodec.INSTANCE);
+        rejected.forEach((message, error) -> {
+            log.error("Moving buffered message {} of session {} to {}: {}",
+                    message.getId(), message.getSessionId(), MessageWriteBuffer.DEAD_LETTER_KEY, error);
+            deadLetters.addAsync(StreamAddArgs.entries(Map.of(DEAD_LETTER_MESSAGE, json(message), DEAD_LETTER_ERROR, error))
+                    .trimNonStrict().maxLen(DEAD_LETTER_MAX_LENGTH).noLimit());
+        });
+        batch.execute();
+    }
+
+    private String json(ChatMessageDTO message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialise message " + message.getId(), e);
+        }
+    }
+
+    private void acknowledge(Iterable<StreamMessageId> ids, List<ChatMessageDTO> messages) {
+        StreamMessageId[] entryIds = toArray(ids);
+        Map<UUID, List<String>> bySession = new LinkedHashMap<>();
+        for (ChatMessageDTO message : messages) {
+            bySession.computeIfAbsent(message.getSessionId(), id -> new ArrayList<>()).add(message.getId().toString());
+        }
+
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        RStreamAsync<String, ChatMessageDTO> stream = batch.getStream(MessageWriteBuffer.STREAM_KEY, buffer.codec());
+        stream.ackAsync(GROUP, entryIds);
+        stream.removeAsync(entryIds);
+        bySession.forEach((sessionId, messageIds) -> batch.<String, ChatMessageDTO>getMap(
+                MessageWriteBuffer.pendingKey(sessionId), buffer.codec()).fastRemoveAsync(messageIds.toArray(String[]::new)));
+        // A failure here only leaves committed entries behind; they are re-inserted as no-ops when claimed
+        batch.execute();
+    }
+
+    private static StreamMessageId[] toArray(Iterable<StreamMessageId> ids) {
+        List<StreamMessageId> list = new ArrayList<>();
+        ids.forEach(list::add);
+        return list.toArray(StreamMessageId[]::new);
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RETRY_BACKOFF);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
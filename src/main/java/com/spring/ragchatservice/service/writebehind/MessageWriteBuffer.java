@@ -0,0 +1,175 @@
+package com.spring.ragchatservice.service.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.repository.ChatMessageRepository;
+import com.spring.ragchatservice.service.context.ContextBlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.id.uuid.CustomVersionOneStrategy;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMap;
+import org.redisson.api.RStream;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.TypedJsonJacksonCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Write-behind log for chat messages. An accepted message is appended to a Redis stream, which is
+ * the durable copy until {@link MessageFlusher} group-commits it to Postgres, and to a per-session
+ * hash that reads merge in so a client always sees its own writes.
+ */
+@Component
+@Slf4j
+public class MessageWriteBuffer {
+
+    static final String STREAM_KEY = "chat-messages:wal";
+    static final String PENDING_PREFIX = "chat-messages:pending:";
+    static final String DEAD_LETTER_KEY = "chat-messages:dead-letter";
+    static final String FIELD = "m";
+
+    /** Ascending (createdAt, id), matching Postgres' ordering of timestamptz and uuid. */
+    public static final Comparator<ChatMessageDTO> ORDER = Comparator
+            .comparing(ChatMessageDTO::getCreatedAt)
+            .thenComparing(ChatMessageDTO::getId, (a, b) -> {
+                int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+                return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+            });
+
+    // Postgres keeps timestamps to the microsecond; buffered copies must compare equal to stored ones
+    private static final ChronoUnit TIMESTAMP_PRECISION = ChronoUnit.MICROS;
+
+    // Same time-based ids as @UuidGenerator(style = TIME) on the entity
+    private final CustomVersionOneStrategy idStrategy = new CustomVersionOneStrategy();
+
+    private final RedissonClient redissonClient;
+    private final ChatMessageRepository messageRepository;
+    private final boolean enabled;
+    private final boolean syncAof;
+    private final Duration syncTimeout;
+    private final Codec codec;
+
+    public MessageWriteBuffer(RedissonClient redissonClient,
+                              ChatMessageRepository messageRepository,
+                              ObjectMapper objectMapper,
+                              @Value("${app.messages.write-behind.enabled:false}") boolean enabled,
+                              @Value("${app.messages.write-behind.sync-aof:false}") boolean syncAof,
+                              @Value("${app.messages.write-behind.sync-timeout:1s}") Duration syncTimeout) {
+        this.redissonClient = redissonClient;
+        this.messageRepository = messageRepository;
+        this.enabled = enabled;
+        this.syncAof = syncAof;
+        this.syncTimeout = syncTimeout;
+        this.codec = new TypedJsonJacksonCodec(String.class, ChatMessageDTO.class, objectMapper.copy());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends the message to the log and the session's pending set in one atomic Redis batch.
+     * With sync-aof the call also waits until Redis has fsynced the append to its AOF.
+     * @return The accepted message, or null if Redis is unavailable and the caller should write through
+     */
+    public ChatMessageDTO append(UUID sessionId, String sender, String content, String retrievedContext) {
+        // The context text travels with the message; the flusher stores it before the message row
+        ChatMessageDTO message = new ChatMessageDTO(idStrategy.generateUuid(null), sessionId, sender, content,
+                retrievedContext, retrievedContext == null ? null : ContextBlobStore.hash(retrievedContext),
+                Instant.now().truncatedTo(TIMESTAMP_PRECISION));
+
+        BatchOptions options = BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC);
+        if (syncAof) {
+            options = options.syncAOF(1, 0, syncTimeout);
+        }
+        try {
+            RBatch batch = redissonClient.createBatch(options);
+            batch.<String, ChatMessageDTO>getStream(STREAM_KEY, codec).addAsync(StreamAddArgs.entry(FIELD, message));
+            // The pending copy keeps the context text so its hash resolves before the flusher stores the blob
+            batch.<String, ChatMessageDTO>getMap(pendingKey(sessionId), codec).fastPutAsync(message.getId().toString(), message);
+            batch.execute();
+            return message;
+        } catch (RedisException e) {
+            log.warn("Write-behind append failed for session {}, writing through: {}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return Messages of the session accepted but not yet committed to Postgres, oldest first, with their context text
+     */
+    public List<ChatMessageDTO> pending(UUID sessionId) {
+        if (!enabled) {
+            return List.of();
+        }
+        Map<String, ChatMessageDTO> buffered;
+        try {
+            buffered = pendingMap(sessionId).readAllMap();
+        } catch (RedisException e) {
+            log.warn("Write-behind read failed for session {}: {}", sessionId, e.getMessage());
+            return List.of();
+        }
+        if (buffered.isEmpty()) {
+            return List.of();
+        }
+
+        // A batch may have committed without its pending entries being cleared yet
+        List<ChatMessageDTO> pending = new ArrayList<>(buffered.values());
+        pending.sort(ORDER);
+        Set<UUID> committed = new HashSet<>(messageRepository.findExistingIds(
+                pending.stream().map(ChatMessageDTO::getId).toList(), pending.getFirst().getCreatedAt()));
+        pending.removeIf(message -> committed.contains(message.getId()));
+        return pending;
+    }
+
+    /**
+     * @return Text of a retrieved context referenced by a message of the session still waiting to be
+     * flushed, or null if none references it
+     */
+    public String pendingContext(UUID sessionId, UUID contextHash) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            for (ChatMessageDTO message : pendingMap(sessionId).readAllValues()) {
+                if (contextHash.equals(message.getContextHash()) && message.getRetrievedContext() != null) {
+                    return message.getRetrievedContext();
+                }
+            }
+        } catch (RedisException e) {
+            log.warn("Write-behind read failed for session {}: {}", sessionId, e.getMessage());
+        }
+        return null;
+    }
+
+    RStream<String, ChatMessageDTO> stream() {
+        return redissonClient.getStream(STREAM_KEY, codec);
+    }
+
+    RMap<String, ChatMessageDTO> pendingMap(UUID sessionId) {
+        return redissonClient.getMap(pendingKey(sessionId), codec);
+    }
+
+    Codec codec() {
+        return codec;
+    }
+
+    static String pendingKey(UUID sessionId) {
+        return PENDING_PREFIX + sessionId;
+    }
+}
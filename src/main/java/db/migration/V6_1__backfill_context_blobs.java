@@ -0,0 +1,67 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Moves the retrieved context of existing messages into context_blobs, uncompressed, computing the
+ * same hash in SQL as ContextBlobStore. Runs outside a transaction and walks each partition by id
+ * in batches, each committed on its own, so only the rows of one batch are locked at a time. Moved
+ * rows no longer match, so a re-run after a failure only has the rest left to do. Postgres still
+ * TOAST-compresses the larger values.
+ */
+public class V6_1__backfill_context_blobs extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    private static final String HASH = "encode(substring(sha256(convert_to(retrieved_context, 'UTF8')) FROM 1 FOR 16), 'hex')::uuid";
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        for (String partition : ChatMessagePartitions.names(connection)) {
+            String nextBatch = "SELECT id FROM " + partition + " WHERE id > ? ORDER BY id LIMIT " + BATCH_SIZE;
+            // Clearing the text too, so the new row versions stop pointing at its TOAST chunks
+            String backfill = "WITH batch AS (" +
+                    "SELECT id, created_at, " + HASH + " AS hash, convert_to(retrieved_context, 'UTF8') AS data FROM " + partition +
+                    " WHERE id > ? AND id <= ? AND retrieved_context IS NOT NULL FOR UPDATE), " +
+                    "blobs AS (INSERT INTO context_blobs (hash, codec, raw_length, data) " +
+                    "SELECT DISTINCT ON (hash) hash, 0, octet_length(data), data FROM batch ON CONFLICT (hash) DO NOTHING) " +
+                    "UPDATE " + partition + " m SET context_hash = b.hash, retrieved_context = NULL " +
+                    "FROM batch b WHERE m.id = b.id AND m.created_at = b.created_at";
+            try (PreparedStatement ids = connection.prepareStatement(nextBatch);
+                 PreparedStatement update = connection.prepareStatement(backfill)) {
+                UUID after = new UUID(0L, 0L);
+                UUID last;
+                while ((last = lastOfBatch(ids, after)) != null) {
+                    update.setObject(1, after);
+                    update.setObject(2, last);
+                    update.executeUpdate();
+                    after = last;
+                }
+            }
+        }
+    }
+
+    private static UUID lastOfBatch(PreparedStatement ids, UUID after) throws SQLException {
+        ids.setObject(1, after);
+        UUID last = null;
+        try (ResultSet rs = ids.executeQuery()) {
+            while (rs.next()) {
+                last = rs.getObject(1, UUID.class);
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,52 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * References context_blobs from chat_messages.context_hash without holding a blocking lock while the
+ * rows are checked. Postgres cannot add a NOT VALID foreign key to a partitioned table, so each
+ * partition gets one NOT VALID, which only takes a brief lock, and then validates it, which scans
+ * under a lock that lets writes through. The key on chat_messages then adopts the validated
+ * partition keys instead of checking the rows again, and partitions created later inherit it.
+ */
+public class V6_2__add_context_blob_foreign_key extends BaseJavaMigration {
+
+    private static final String CONSTRAINT = "fk_context_blob";
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        for (String partition : ChatMessagePartitions.names(connection)) {
+            String constraint = partition + "_" + CONSTRAINT;
+            if (!exists(connection, partition, constraint)) {
+                ChatMessagePartitions.execute(connection, "ALTER TABLE " + partition + " ADD CONSTRAINT " + constraint +
+                        " FOREIGN KEY (context_hash) REFERENCES context_blobs (hash) NOT VALID");
+            }
+            ChatMessagePartitions.execute(connection, "ALTER TABLE " + partition + " VALIDATE CONSTRAINT " + constraint);
+        }
+        ChatMessagePartitions.execute(connection, "ALTER TABLE chat_messages ADD CONSTRAINT " + CONSTRAINT +
+                " FOREIGN KEY (context_hash) REFERENCES context_blobs (hash)");
+    }
+
+    private static boolean exists(Connection connection, String table, String constraint) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM pg_constraint WHERE conrelid = ?::regclass AND conname = ?")) {
+            statement.setString(1, table);
+            statement.setString(2, constraint);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
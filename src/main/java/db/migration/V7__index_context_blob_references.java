@@ -0,0 +1,64 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Indexes chat_messages.context_hash, which ContextBlobCollector checks before it deletes a blob.
+ * Runs outside a transaction so the index is built concurrently. An index of a partitioned table
+ * cannot be, so it is declared on chat_messages alone and then built partition by partition and
+ * attached; it becomes valid once every partition has its own. Partitions created later get theirs
+ * with the table. Safe to re-run after a failure: an index left invalid by an interrupted build is
+ * dropped and built again.
+ */
+public class V7__index_context_blob_references extends BaseJavaMigration {
+
+    private static final String PARENT_INDEX = "idx_chat_messages_context_hash";
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        ChatMessagePartitions.execute(connection, "CREATE INDEX IF NOT EXISTS " + PARENT_INDEX + " ON ONLY chat_messages (context_hash)");
+        for (String partition : ChatMessagePartitions.names(connection)) {
+            String index = partition + "_context_hash_idx";
+            createConcurrently(connection, index, partition + " (context_hash)");
+            if (!attached(connection, index)) {
+                ChatMessagePartitions.execute(connection, "ALTER INDEX " + PARENT_INDEX + " ATTACH PARTITION " + index);
+            }
+        }
+    }
+
+    private static void createConcurrently(Connection connection, String index, String definition) throws SQLException {
+        Boolean valid = query(connection,
+                "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?", index);
+        if (Boolean.FALSE.equals(valid)) {
+            ChatMessagePartitions.execute(connection, "DROP INDEX CONCURRENTLY " + index);
+        }
+        ChatMessagePartitions.execute(connection, "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + index + " ON " + definition);
+    }
+
+    private static boolean attached(Connection connection, String index) throws SQLException {
+        return Boolean.TRUE.equals(query(connection,
+                "SELECT true FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE c.relname = ? AND i.inhparent = '" + PARENT_INDEX + "'::regclass", index));
+    }
+
+    private static Boolean query(Connection connection, String sql, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, name);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getBoolean(1) : null;
+            }
+        }
+    }
+}
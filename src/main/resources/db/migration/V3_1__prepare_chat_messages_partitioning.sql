@@ -0,0 +1,12 @@
+-- checks V4 needs before it can attach chat_messages as a partition: the partition key cannot be
+-- null, and the rows have to lie before the first monthly partition. NOT VALID adds them without
+-- scanning the table (new rows are checked already); V3_2 validates them without blocking writes
+UPDATE chat_messages SET created_at = COALESCE(updated_at, CURRENT_TIMESTAMP) WHERE created_at IS NULL;
+ALTER TABLE chat_messages ADD CONSTRAINT chat_messages_created_at_not_null CHECK (created_at IS NOT NULL) NOT VALID;
+
+DO $$
+DECLARE
+    cutover TIMESTAMPTZ := (date_trunc('month', CURRENT_TIMESTAMP AT TIME ZONE 'UTC') + INTERVAL '1 month') AT TIME ZONE 'UTC';
+BEGIN
+    EXECUTE format('ALTER TABLE chat_messages ADD CONSTRAINT chat_messages_legacy_range CHECK (created_at < %L) NOT VALID', cutover);
+END $$;
@@ -0,0 +1,3 @@
+-- VALIDATE takes SHARE UPDATE EXCLUSIVE, so reads and writes go on while the table is scanned
+ALTER TABLE chat_messages VALIDATE CONSTRAINT chat_messages_created_at_not_null;
+ALTER TABLE chat_messages VALIDATE CONSTRAINT chat_messages_legacy_range;
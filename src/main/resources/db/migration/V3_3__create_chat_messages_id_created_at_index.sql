@@ -0,0 +1,5 @@
+-- every unique index of a partitioned table has to include the partition key. Built concurrently,
+-- outside a transaction, so writes are not blocked; V4 turns it into the legacy partition's primary key.
+-- A build that failed part way leaves an invalid index behind, dropped here before retrying
+DROP INDEX CONCURRENTLY IF EXISTS chat_messages_legacy_pkey;
+CREATE UNIQUE INDEX CONCURRENTLY chat_messages_legacy_pkey ON chat_messages (id, created_at);
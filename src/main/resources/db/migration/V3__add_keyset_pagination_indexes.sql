@@ -0,0 +1,7 @@
+-- composite indexes backing keyset (cursor) pagination on (created_at, id)
+CREATE INDEX idx_chat_sessions_user_created_id ON chat_sessions(user_id, created_at, id);
+CREATE INDEX idx_chat_messages_session_created_id ON chat_messages(session_id, created_at, id);
+
+-- the single-column indexes are prefixes of the composite ones
+DROP INDEX idx_chat_sessions_user_id;
+DROP INDEX idx_chat_messages_session_id;
@@ -0,0 +1,54 @@
+-- range-partition chat messages by month of created_at (UTC). The existing table is attached as the
+-- partition for everything before next month, so no rows are copied; later months get their own
+-- partitions, created ahead of time by MessagePartitionMaintenance
+ALTER TABLE chat_messages RENAME TO chat_messages_legacy;
+ALTER INDEX idx_chat_messages_session_created_id RENAME TO chat_messages_legacy_session_created_id;
+
+-- pruning on created_at replaces this index
+DROP INDEX idx_chat_messages_created_at;
+
+-- V3_1 to V3_3 did the scans and the index build ahead of time, so every statement here only holds
+-- its lock briefly: the validated checks let SET NOT NULL and ATTACH skip their scans, and the
+-- primary key reuses the index built concurrently
+ALTER TABLE chat_messages_legacy ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE chat_messages_legacy DROP CONSTRAINT chat_messages_created_at_not_null;
+ALTER TABLE chat_messages_legacy
+    DROP CONSTRAINT chat_messages_pkey,
+    ADD CONSTRAINT chat_messages_legacy_pkey PRIMARY KEY USING INDEX chat_messages_legacy_pkey;
+
+CREATE TABLE chat_messages
+(
+   id UUID NOT NULL,
+   session_id UUID NOT NULL,
+   sender VARCHAR(50) NOT NULL,
+   content TEXT NOT NULL,
+   retrieved_context TEXT,
+   created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+   updated_at TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP,
+   CONSTRAINT chat_messages_pkey PRIMARY KEY (id, created_at),
+   CONSTRAINT fk_session FOREIGN KEY (session_id) REFERENCES chat_sessions (id) ON DELETE CASCADE
+) PARTITION BY RANGE (created_at);
+
+-- matches the legacy table's indexes, which are attached to these rather than rebuilt
+CREATE INDEX idx_chat_messages_session_created_id ON chat_messages (session_id, created_at, id);
+
+DO $$
+DECLARE
+    cutover TIMESTAMPTZ;
+    month_start TIMESTAMP;
+BEGIN
+    -- the bound V3_1 checked the rows against
+    SELECT substring(pg_get_constraintdef(oid) from '''([^'']+)''')::timestamptz INTO STRICT cutover
+    FROM pg_constraint
+    WHERE conrelid = 'chat_messages_legacy'::regclass AND conname = 'chat_messages_legacy_range';
+    EXECUTE format('ALTER TABLE chat_messages ATTACH PARTITION chat_messages_legacy FOR VALUES FROM (MINVALUE) TO (%L)', cutover);
+    ALTER TABLE chat_messages_legacy DROP CONSTRAINT chat_messages_legacy_range;
+
+    FOR i IN 0..2 LOOP
+        month_start := (cutover AT TIME ZONE 'UTC') + make_interval(months => i);
+        EXECUTE format('CREATE TABLE chat_messages_p%s PARTITION OF chat_messages FOR VALUES FROM (%L) TO (%L)',
+                       to_char(month_start, 'YYYYMM'),
+                       month_start AT TIME ZONE 'UTC',
+                       (month_start + INTERVAL '1 month') AT TIME ZONE 'UTC');
+    END LOOP;
+END $$;
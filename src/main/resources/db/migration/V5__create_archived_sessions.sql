@@ -0,0 +1,25 @@
+-- cold tier: messages of idle sessions live in compressed segment files, one block per session
+ALTER TABLE chat_sessions ADD COLUMN archived_at TIMESTAMPTZ;
+
+CREATE TABLE archived_sessions
+(
+    session_id UUID PRIMARY KEY,
+    segment VARCHAR(255) NOT NULL,
+    block_offset BIGINT NOT NULL,
+    block_length INT NOT NULL,
+    message_count INT NOT NULL,
+    first_created_at TIMESTAMPTZ NOT NULL,
+    last_created_at TIMESTAMPTZ NOT NULL,
+    archived_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    context_hashes UUID[] NOT NULL,
+    CONSTRAINT fk_archived_session FOREIGN KEY (session_id) REFERENCES chat_sessions (id) ON DELETE CASCADE
+);
+
+-- finding segment files no longer referenced
+CREATE INDEX idx_archived_sessions_segment ON archived_sessions(segment);
+
+-- context blobs still referenced by archived messages, checked before one is deleted
+CREATE INDEX idx_archived_sessions_context_hashes ON archived_sessions USING GIN (context_hashes);
+
+-- archiving candidates: sessions still in the hot tier, oldest activity first
+CREATE INDEX idx_chat_sessions_not_archived ON chat_sessions(updated_at) WHERE archived_at IS NULL;
@@ -0,0 +1,16 @@
+-- retrieved context is stored once per distinct value, keyed by the first 128 bits of its SHA-256;
+-- codec 0 is plain UTF-8, 1 is zstd
+CREATE TABLE context_blobs
+(
+    hash UUID PRIMARY KEY,
+    codec SMALLINT NOT NULL,
+    raw_length INT NOT NULL,
+    data BYTEA NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    -- refreshed whenever the context is stored again; ContextBlobCollector spares recent ones
+    referenced_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- a nullable column without a default only touches the catalog. V6_1 fills it in batches, V6_2 adds
+-- the foreign key, and V8 drops retrieved_context
+ALTER TABLE chat_messages ADD COLUMN context_hash UUID;
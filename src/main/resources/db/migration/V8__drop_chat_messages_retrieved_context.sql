@@ -0,0 +1,3 @@
+-- V6_1 moved every retrieved context into context_blobs and nothing reads or writes the column since.
+-- Dropping it only touches the catalog; the space of the cleared values is reclaimed by vacuum
+ALTER TABLE chat_messages DROP COLUMN retrieved_context;
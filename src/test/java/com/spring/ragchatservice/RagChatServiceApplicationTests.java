@@ -1,10 +1,9 @@
 package com.spring.ragchatservice;
 
+import com.spring.ragchatservice.support.IntegrationTest;
 import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
-class RagChatServiceApplicationTests {
+class RagChatServiceApplicationTests extends IntegrationTest {
 
     @Test
     void contextLoads() {
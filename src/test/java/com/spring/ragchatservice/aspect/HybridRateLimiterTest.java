@@ -0,0 +1,120 @@
+package com.spring.ragchatservice.aspect;
+
+import com.spring.ragchatservice.support.TestServices;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import redis.embedded.RedisServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HybridRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RedissonClient redissonClient;
+
+    @AfterEach
+    void shutdown() {
+        if (redissonClient != null) {
+            redissonClient.shutdown();
+        }
+    }
+
+    @Test
+    void servesPermitsFromALeasedBatch() {
+        redissonClient = TestServices.redisson();
+        HybridRateLimiter limiter = limiter(redissonClient);
+        String key = "endpoint:" + UUID.randomUUID();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire(key, 100, 60)).isTrue();
+        }
+
+        // One round trip leased 10 permits (lease ratio 0.1); the other nine were spent locally
+        assertThat(permits("redis", "accepted")).isEqualTo(1);
+        assertThat(permits("local", "accepted")).isEqualTo(9);
+        assertThat(redissonClient.getRateLimiter(key).availablePermits()).isEqualTo(90);
+    }
+
+    @Test
+    void leasesSmallLimitsWhole() {
+        redissonClient = TestServices.redisson();
+        HybridRateLimiter limiter = limiter(redissonClient);
+        String key = "endpoint:" + UUID.randomUUID();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire(key, 5, 60)).isTrue();
+        }
+        assertThat(limiter.tryAcquire(key, 5, 60)).isFalse();
+
+        // A tenth of 5 is under the minimum lease, so the whole window came in one round trip
+        assertThat(permits("redis", "accepted")).isEqualTo(1);
+        assertThat(permits("local", "accepted")).isEqualTo(4);
+        assertThat(permits("redis", "rejected")).isEqualTo(1);
+    }
+
+    @Test
+    void neverGrantsMoreThanTheDistributedLimit() {
+        redissonClient = TestServices.redisson();
+        HybridRateLimiter first = limiter(redissonClient);
+        HybridRateLimiter second = limiter(redissonClient);
+        String key = "global:" + UUID.randomUUID();
+
+        int granted = 0;
+        for (int i = 0; i < 40; i++) {
+            granted += (i % 2 == 0 ? first : second).tryAcquire(key, 20, 60) ? 1 : 0;
+        }
+
+        assertThat(granted).isEqualTo(20);
+    }
+
+    @Test
+    void fallsBackToTheLocalLimitWhenRedisIsDown() throws Exception {
+        int port = TestServices.freePort();
+        RedisServer redis = new RedisServer(port);
+        redis.start();
+        redissonClient = TestServices.redisson(port);
+        HybridRateLimiter limiter = limiter(redissonClient);
+        redis.stop();
+
+        String key = "endpoint:" + UUID.randomUUID();
+        int granted = 0;
+        for (int i = 0; i < 8; i++) {
+            granted += limiter.tryAcquire(key, 5, 60) ? 1 : 0;
+        }
+
+        assertThat(granted).isEqualTo(5);
+        assertThat(permits("fallback", "accepted")).isEqualTo(5);
+        assertThat(permits("fallback", "rejected")).isEqualTo(3);
+    }
+
+    @Test
+    void acquiresAllLimitsTogether() {
+        redissonClient = TestServices.redisson();
+        HybridRateLimiter limiter = limiter(redissonClient);
+        LimitRequest endpoint = new LimitRequest("endpoint:" + UUID.randomUUID(), 2, 60);
+        LimitRequest global = new LimitRequest("global:" + UUID.randomUUID(), 10, 60);
+
+        assertThat(limiter.tryAcquireAll(List.of(endpoint, global))).isTrue();
+        assertThat(limiter.tryAcquireAll(List.of(endpoint, global))).isTrue();
+        assertThat(limiter.tryAcquireAll(List.of(endpoint, global))).isFalse();
+    }
+
+    private HybridRateLimiter limiter(RedissonClient client) {
+        return new HybridRateLimiter(new RateLimiterRegistry(client, 1_000), CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.ofDefaults(), meterRegistry, 0.1, 5, Duration.ofMillis(200));
+    }
+
+    private double permits(String source, String outcome) {
+        return meterRegistry.find("rate.limit.permits").tags("source", source, "outcome", outcome).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+}
@@ -0,0 +1,139 @@
+package com.spring.ragchatservice.service.ai;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoutingAIServiceTest {
+
+    private static final Duration LONG_DEADLINE = Duration.ofSeconds(5);
+
+    @Test
+    void ewmaRanksByLatencyAndErrors() {
+        RoutingAIService.LatencyStats fast = new RoutingAIService.LatencyStats(0.2);
+        RoutingAIService.LatencyStats slow = new RoutingAIService.LatencyStats(0.2);
+        for (int i = 0; i < 20; i++) {
+            fast.success(Duration.ofMillis(10).toNanos());
+            slow.success(Duration.ofMillis(100).toNanos());
+        }
+        assertThat(fast.score()).isLessThan(slow.score());
+        assertThat(slow.p95Nanos()).isEqualTo(Duration.ofMillis(100).toNanos());
+
+        // A run of failures makes the fast backend's expected latency per success the worse one
+        for (int i = 0; i < 20; i++) {
+            fast.failure();
+        }
+        assertThat(fast.score()).isGreaterThan(slow.score());
+        for (int i = 0; i < 40; i++) {
+            fast.success(Duration.ofMillis(10).toNanos());
+        }
+        assertThat(fast.score()).isLessThan(slow.score());
+    }
+
+    @Test
+    void routesMostRequestsToTheFasterBackend() {
+        Backend slow = new Backend(() -> Mono.delay(Duration.ofMillis(40)).thenReturn("slow"));
+        Backend fast = new Backend(() -> Mono.delay(Duration.ofMillis(5)).thenReturn("fast"));
+        RoutingAIService router = router(slow, fast, false, LONG_DEADLINE);
+
+        for (int i = 0; i < 20; i++) {
+            router.generate("prompt", null).block();
+        }
+
+        assertThat(fast.calls.get()).isGreaterThanOrEqualTo(18);
+    }
+
+    @Test
+    void hedgesAPrimaryThatPassesItsDeadline() {
+        Backend stuck = new Backend(() -> Mono.delay(Duration.ofSeconds(10)).thenReturn("stuck"));
+        Backend quick = new Backend(() -> Mono.delay(Duration.ofMillis(10)).thenReturn("quick"));
+        RoutingAIService router = router(stuck, quick, true, Duration.ofMillis(50));
+
+        long start = System.nanoTime();
+        assertThat(router.generate("prompt", null).block()).isEqualTo("quick");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(stuck.cancelled).hasValue(1);
+    }
+
+    @Test
+    void hedgesAtOnceWhenThePrimaryFailsOrAnswersEmpty() {
+        Backend empty = new Backend(Mono::empty);
+        Backend failing = new Backend(() -> Mono.error(new IllegalStateException("down")));
+        Backend backup = new Backend(() -> Mono.delay(Duration.ofMillis(10)).thenReturn("backup"));
+
+        long start = System.nanoTime();
+        assertThat(router(empty, backup, true, LONG_DEADLINE).generate("prompt", null).block()).isEqualTo("backup");
+        assertThat(router(failing, backup, true, LONG_DEADLINE).generate("prompt", null).block()).isEqualTo("backup");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void hedgesAnEmptyStream() {
+        Backend empty = new Backend(Mono::empty);
+        Backend backup = new Backend(() -> Mono.just("backup"));
+
+        long start = System.nanoTime();
+        assertThat(router(empty, backup, true, LONG_DEADLINE).streamResponse("prompt", null).collectList().block())
+                .containsExactly("backup");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void neverHedgesASingleBackend() {
+        Backend only = new Backend(() -> Mono.delay(Duration.ofMillis(200)).thenReturn("only"));
+        Map<String, AIService> backends = Map.of("only", only);
+        RoutingAIService router = new RoutingAIService(backends, 0.2, true, Duration.ofMillis(10), Duration.ofMillis(10), 0);
+
+        assertThat(router.generate("prompt", null).block()).isEqualTo("only");
+        assertThat(router.streamResponse("prompt", null).collectList().block()).containsExactly("only");
+
+        assertThat(only.calls).hasValue(2);
+    }
+
+    private static RoutingAIService router(Backend first, Backend second, boolean hedging, Duration deadline) {
+        Map<String, AIService> backends = new LinkedHashMap<>();
+        backends.put("first", first);
+        backends.put("second", second);
+        return new RoutingAIService(backends, 0.2, hedging, deadline, Duration.ofMillis(10), 0);
+    }
+
+    private static final class Backend implements AIService {
+
+        private final Supplier<Mono<String>> reply;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger cancelled = new AtomicInteger();
+
+        private Backend(Supplier<Mono<String>> reply) {
+            this.reply = reply;
+        }
+
+        @Override
+        public String generateResponse(String prompt, String context) {
+            return generate(prompt, context).block();
+        }
+
+        @Override
+        public Mono<String> generate(String prompt, String context) {
+            return Mono.defer(() -> {
+                calls.incrementAndGet();
+                return reply.get().doOnCancel(cancelled::incrementAndGet);
+            });
+        }
+
+        @Override
+        public Flux<String> streamResponse(String prompt, String context) {
+            return generate(prompt, context).flux();
+        }
+    }
+}
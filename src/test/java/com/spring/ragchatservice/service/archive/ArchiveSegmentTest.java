@@ -0,0 +1,122 @@
+package com.spring.ragchatservice.service.archive;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArchiveSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsEachSessionsBlock() throws IOException {
+        SplittableRandom random = new SplittableRandom(5);
+        List<List<ChatMessageDTO>> sessions = List.of(session(random, 1_500), session(random, 1), session(random, 40));
+
+        List<ArchiveSegment.Block> blocks = new ArrayList<>();
+        try (ArchiveSegment.Writer writer = ArchiveSegment.create(directory, "messages-1")) {
+            for (List<ChatMessageDTO> messages : sessions) {
+                for (ChatMessageDTO message : messages) {
+                    writer.add(message);
+                }
+                blocks.add(writer.finishBlock());
+            }
+            assertThat(writer.size()).isEqualTo(blocks.getLast().offset() + blocks.getLast().length());
+            writer.commit();
+        }
+
+        try (ArchiveSegment segment = ArchiveSegment.open(directory, "messages-1")) {
+            for (int i = sessions.size() - 1; i >= 0; i--) {
+                List<ChatMessageDTO> expected = sessions.get(i);
+                assertThat(blocks.get(i).count()).isEqualTo(expected.size());
+                assertThat(segment.read(expected.getFirst().getSessionId(), blocks.get(i).offset()))
+                        .containsExactlyElementsOf(expected);
+            }
+        }
+    }
+
+    @Test
+    void readsBlocksPastTwoGigabytes() throws IOException {
+        List<ChatMessageDTO> messages = session(new SplittableRandom(8), 20);
+        ArchiveSegment.Block block;
+        try (ArchiveSegment.Writer writer = ArchiveSegment.create(directory, "small")) {
+            for (ChatMessageDTO message : messages) {
+                writer.add(message);
+            }
+            block = writer.finishBlock();
+            writer.commit();
+        }
+
+        // The same header and block, the block moved beyond 3 GB; the gap stays sparse on disk
+        byte[] small = Files.readAllBytes(directory.resolve("small" + ArchiveSegment.SUFFIX));
+        long offset = 3L << 30;
+        try (FileChannel channel = FileChannel.open(directory.resolve("large" + ArchiveSegment.SUFFIX),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(small, 0, (int) block.offset()), 0);
+            writeFully(channel, ByteBuffer.wrap(small, (int) block.offset(), block.length()), offset);
+        }
+
+        try (ArchiveSegment segment = ArchiveSegment.open(directory, "large")) {
+            assertThat(segment.read(messages.getFirst().getSessionId(), offset)).containsExactlyElementsOf(messages);
+        }
+    }
+
+    @Test
+    void leavesNothingBehindWithoutCommit() throws IOException {
+        try (ArchiveSegment.Writer writer = ArchiveSegment.create(directory, "abandoned")) {
+            writer.add(session(new SplittableRandom(2), 1).getFirst());
+            writer.finishBlock();
+        }
+
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void rejectsAFileOfAnotherFormat() throws IOException {
+        Files.write(directory.resolve("other" + ArchiveSegment.SUFFIX), new byte[32]);
+
+        assertThatThrownBy(() -> ArchiveSegment.open(directory, "other"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("message archive");
+    }
+
+    private static List<ChatMessageDTO> session(SplittableRandom random, int count) {
+        UUID sessionId = UUID.randomUUID();
+        Instant createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS).minus(400, ChronoUnit.DAYS);
+        List<ChatMessageDTO> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            createdAt = createdAt.plus(random.nextInt(1, 5_000_000), ChronoUnit.MICROS);
+            UUID contextHash = i % 3 == 0 ? UUID.randomUUID() : null;
+            String content = i % 7 == 0 ? "" : "message " + i + " é中 " + Long.toHexString(random.nextLong());
+            messages.add(new ChatMessageDTO(UUID.randomUUID(), sessionId, i % 2 == 0 ? "USER" : "AI", content,
+                    contextHash, createdAt));
+        }
+        return messages;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position() - start);
+        }
+    }
+}
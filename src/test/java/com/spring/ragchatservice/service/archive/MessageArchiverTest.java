@@ -0,0 +1,85 @@
+package com.spring.ragchatservice.service.archive;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Archives sessions last active twenty years ago, so sessions of other tests stay hot.
+ */
+@TestPropertySource(properties = {
+        "app.messages.archive.enabled=true",
+        "app.messages.archive.idle=3650d",
+        "app.messages.archive.max-segment-size=1KB"
+})
+class MessageArchiverTest extends IntegrationTest {
+
+    private static final Instant LONG_AGO = Instant.parse("2006-03-01T12:00:00Z");
+
+    @Autowired
+    private MessageArchiver archiver;
+
+    @Autowired
+    private MessageArchive archive;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void streamsSessionsIntoSegmentsOfBoundedSize() {
+        // More messages than one page, so the session is read in several
+        UUID large = session(2_500);
+        UUID small = session(3);
+        UUID other = session(40);
+        List<ChatMessageDTO> largeMessages = messages(large);
+        List<ChatMessageDTO> otherMessages = messages(other);
+
+        archiver.archiveIdleSessions();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM chat_messages WHERE session_id IN (?, ?, ?)", Integer.class, large, small, other)).isZero();
+        // A block is only started while its segment is under 1 KB, and the large one alone passes it
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT block_offset FROM archived_sessions WHERE session_id IN (?, ?, ?)", Long.class, large, small, other))
+                .allSatisfy(offset -> assertThat(offset).isLessThan(1_024));
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(DISTINCT segment) FROM archived_sessions WHERE session_id IN (?, ?, ?)", Integer.class, large, small, other))
+                .isGreaterThan(1);
+        assertThat(archive.read(large)).containsExactlyElementsOf(largeMessages);
+        assertThat(archive.read(small)).hasSize(3);
+
+        assertThat(archive.restore(other)).isEqualTo(40);
+        assertThat(messages(other)).containsExactlyElementsOf(otherMessages);
+        assertThat(archive.read(other)).isEmpty();
+    }
+
+    private UUID session(int messages) {
+        UUID sessionId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO chat_sessions (id, user_id, title, created_at, updated_at) VALUES (?, 'archiver-test', ?, ?, ?)",
+                sessionId, sessionId.toString(), Timestamp.from(LONG_AGO), Timestamp.from(LONG_AGO));
+        jdbcTemplate.update("INSERT INTO chat_messages (id, session_id, sender, content, created_at) " +
+                        "SELECT gen_random_uuid(), ?, CASE WHEN n % 2 = 0 THEN 'USER' ELSE 'AI' END, " +
+                        "'message ' || n || ' ' || md5(random()::text), ?::timestamptz + n * INTERVAL '1 second' " +
+                        "FROM generate_series(1, ?) AS n",
+                sessionId, Timestamp.from(LONG_AGO), messages);
+        return sessionId;
+    }
+
+    private List<ChatMessageDTO> messages(UUID sessionId) {
+        return jdbcTemplate.query("SELECT id, sender, content, context_hash, created_at FROM chat_messages " +
+                        "WHERE session_id = ? ORDER BY created_at, id",
+                (rs, row) -> new ChatMessageDTO(rs.getObject(1, UUID.class), sessionId, rs.getString(2), rs.getString(3),
+                        rs.getObject(4, UUID.class), rs.getTimestamp(5).toInstant()),
+                sessionId);
+    }
+}
@@ -0,0 +1,99 @@
+package com.spring.ragchatservice.service.cache;
+
+import com.spring.ragchatservice.service.retrieval.HashingEmbedder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticResponseCacheTest {
+
+    private final HashingEmbedder embedder = new HashingEmbedder(384);
+
+    @Test
+    void servesExactRepeatsIgnoringCaseAndWhitespace() {
+        SemanticResponseCache cache = cache(false);
+        cache.put(cache.key("What is the refund policy?", "ctx"), "30 days");
+
+        assertThat(cache.get(cache.key("  what is the   REFUND policy? ", "ctx"))).isEqualTo("30 days");
+        assertThat(cache.get(cache.key("What is the refund policy?", "other ctx"))).isNull();
+    }
+
+    @Test
+    void answersOnlyExactRepeatsByDefault() {
+        SemanticResponseCache cache = cache(false);
+        cache.put(cache.key("please enable streaming replies for this session", null), "enabled");
+
+        assertThat(cache.get(cache.key("please do not enable streaming replies for this session", null))).isNull();
+    }
+
+    @Test
+    void findsSimilarPromptsWhenEnabled() {
+        SemanticResponseCache cache = cache(true);
+        cache.put(cache.key("how do I reset my password on the mobile app today", "accounts"), "settings");
+
+        assertThat(cache.get(cache.key("how do I reset my password on the mobile app", "accounts"))).isEqualTo("settings");
+        assertThat(cache.get(cache.key("how do I reset my password on the mobile app", "billing"))).isNull();
+        assertThat(cache.get(cache.key("which plans include priority support", "accounts"))).isNull();
+    }
+
+    @Test
+    void bucketsNarrowTheCandidatesAndKeepRecall() {
+        SimilarityBuckets<Integer> buckets = new SimilarityBuckets<>(64);
+        SplittableRandom random = new SplittableRandom(9);
+        float[][] vectors = new float[10_000][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = unit(gaussian(random, 64));
+            buckets.add(i, vectors[i]);
+        }
+
+        int found = 0;
+        long candidates = 0;
+        for (int i = 0; i < 200; i++) {
+            // A perturbed copy at cosine similarity ~0.95 to vector i
+            float[] query = gaussian(random, 64);
+            for (int d = 0; d < query.length; d++) {
+                query[d] = vectors[i][d] + 0.04f * query[d];
+            }
+            var matches = buckets.candidates(unit(query));
+            candidates += matches.size();
+            if (matches.contains(i)) {
+                found++;
+            }
+        }
+
+        assertThat(found).isGreaterThanOrEqualTo(190);
+        assertThat(candidates / 200).isLessThan(1_000);
+
+        for (int i = 0; i < vectors.length; i++) {
+            buckets.remove(i, vectors[i]);
+        }
+        assertThat(buckets.bucketCount()).isZero();
+    }
+
+    private SemanticResponseCache cache(boolean semantic) {
+        return new SemanticResponseCache(embedder, null, 100, Duration.ofMinutes(1), 0.92f, 0.9f, false, semantic);
+    }
+
+    private static float[] gaussian(SplittableRandom random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float[] unit(float[] vector) {
+        float norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = (float) Math.sqrt(norm);
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] /= norm;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,107 @@
+package com.spring.ragchatservice.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.spring.ragchatservice.dto.ChatSessionDTO;
+import com.spring.ragchatservice.support.TestServices;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class SessionCacheTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private RedissonClient redissonClient;
+    private SessionCache node;
+    private SessionCache otherNode;
+
+    @BeforeEach
+    void start() {
+        redissonClient = TestServices.redisson();
+        node = cache();
+        otherNode = cache();
+    }
+
+    @AfterEach
+    void stop() {
+        node.unsubscribe();
+        otherNode.unsubscribe();
+        redissonClient.shutdown();
+    }
+
+    @Test
+    void loadsOnceAndServesFromEitherTier() {
+        ChatSessionDTO session = session("v1");
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(node.get(session.getId(), () -> count(loads, session))).isEqualTo(session);
+        assertThat(node.get(session.getId(), () -> count(loads, session))).isEqualTo(session);
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertThat(otherNode.get(session.getId(), () -> count(loads, session))).isEqualTo(session));
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void evictionReachesEveryNode() {
+        ChatSessionDTO old = session("v1");
+        ChatSessionDTO renamed = copy(old, "v2");
+        node.get(old.getId(), () -> old);
+        await().atMost(Duration.ofSeconds(5)).until(() -> otherNode.get(old.getId(), () -> null) != null);
+
+        node.evict(old.getId());
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertThat(otherNode.get(old.getId(), () -> renamed).getTitle()).isEqualTo("v2"));
+        assertThat(node.get(old.getId(), () -> renamed).getTitle()).isEqualTo("v2");
+    }
+
+    @Test
+    void doesNotCacheARowLoadedBeforeAConcurrentEviction() {
+        ChatSessionDTO old = session("v1");
+        ChatSessionDTO renamed = copy(old, "v2");
+
+        // The reader sees the old row; the writer commits and evicts before the reader caches it
+        ChatSessionDTO read = node.get(old.getId(), () -> {
+            otherNode.evict(old.getId());
+            return old;
+        });
+        assertThat(read.getTitle()).isEqualTo("v1");
+
+        AtomicInteger loads = new AtomicInteger();
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertThat(otherNode.get(old.getId(), () -> count(loads, renamed)).getTitle()).isEqualTo("v2"));
+        assertThat(node.get(old.getId(), () -> count(loads, renamed)).getTitle()).isEqualTo("v2");
+    }
+
+    private SessionCache cache() {
+        SessionCache cache = new SessionCache(redissonClient, objectMapper, 100, Duration.ofMinutes(1), Duration.ofMinutes(5));
+        cache.subscribe();
+        return cache;
+    }
+
+    private static ChatSessionDTO session(String title) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        return new ChatSessionDTO(UUID.randomUUID(), "user", title, null, false, now, now, null);
+    }
+
+    private static ChatSessionDTO copy(ChatSessionDTO session, String title) {
+        return new ChatSessionDTO(session.getId(), session.getUserId(), title, session.getDescription(),
+                session.isFavorite(), session.getCreatedAt(), Instant.now(), null);
+    }
+
+    private static ChatSessionDTO count(AtomicInteger loads, ChatSessionDTO session) {
+        loads.incrementAndGet();
+        return session;
+    }
+}
@@ -0,0 +1,113 @@
+package com.spring.ragchatservice.service.context;
+
+import com.spring.ragchatservice.service.archive.MessageArchive;
+import com.spring.ragchatservice.service.archive.MessageArchiver;
+import com.spring.ragchatservice.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Shares the archiving context of MessageArchiverTest, so sessions dated twenty years ago get archived.
+ */
+@TestPropertySource(properties = {
+        "app.messages.archive.enabled=true",
+        "app.messages.archive.idle=3650d",
+        "app.messages.archive.max-segment-size=1KB"
+})
+class ContextBlobCollectorTest extends IntegrationTest {
+
+    private static final Instant LONG_AGO = Instant.parse("2006-03-01T12:00:00Z");
+
+    @Autowired
+    private ContextBlobCollector collector;
+
+    @Autowired
+    private ContextBlobStore store;
+
+    @Autowired
+    private MessageArchiver archiver;
+
+    @Autowired
+    private MessageArchive archive;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void deletesOnlyBlobsNothingRefersTo() {
+        // Postgres orders uuids as unsigned, so hashes with the top bit clear sort first
+        UUID lowOrphan = store.save(context("orphan", false));
+        UUID highOrphan = store.save(context("orphan", true));
+        UUID recent = store.save("recent " + UUID.randomUUID());
+        UUID hot = store.save("hot " + UUID.randomUUID());
+        UUID archived = store.save(context("archived", false));
+        message(session(Instant.now()), hot);
+        UUID archivedSession = session(LONG_AGO);
+        message(archivedSession, archived);
+        // Scheduled, so only reachable from its own package
+        ReflectionTestUtils.invokeMethod(archiver, "archiveIdleSessions");
+        age(lowOrphan, highOrphan, hot, archived);
+
+        collector.collect();
+
+        assertThat(exists(lowOrphan)).isFalse();
+        assertThat(exists(highOrphan)).isFalse();
+        assertThat(exists(recent)).isTrue();
+        assertThat(exists(hot)).isTrue();
+        assertThat(exists(archived)).isTrue();
+        assertThat(jdbcTemplate.queryForList("SELECT unnest(context_hashes) FROM archived_sessions WHERE session_id = ?",
+                UUID.class, archivedSession)).containsExactly(archived);
+        assertThat(archive.read(archivedSession)).singleElement()
+                .satisfies(message -> assertThat(store.find(message.getContextHash())).startsWith("archived "));
+    }
+
+    @Test
+    void requiresAGraceLongerThanStoredHashesAreTrusted() {
+        assertThatThrownBy(() -> new ContextBlobCollector(jdbcTemplate, true, ContextBlobStore.REMEMBER_STORED))
+                .isInstanceOf(IllegalArgumentException.class);
+        new ContextBlobCollector(jdbcTemplate, true, ContextBlobStore.REMEMBER_STORED.plus(Duration.ofMinutes(1)));
+    }
+
+    private static String context(String prefix, boolean topBitSet) {
+        while (true) {
+            String context = prefix + " " + UUID.randomUUID();
+            if (ContextBlobStore.hash(context).getMostSignificantBits() < 0 == topBitSet) {
+                return context;
+            }
+        }
+    }
+
+    private UUID session(Instant at) {
+        UUID sessionId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO chat_sessions (id, user_id, title, created_at, updated_at) VALUES (?, 'collector-test', ?, ?, ?)",
+                sessionId, sessionId.toString(), Timestamp.from(at), Timestamp.from(at));
+        return sessionId;
+    }
+
+    private void message(UUID sessionId, UUID contextHash) {
+        jdbcTemplate.update("INSERT INTO chat_messages (id, session_id, sender, content, context_hash, created_at) " +
+                        "SELECT gen_random_uuid(), id, 'AI', 'reply', ?, created_at FROM chat_sessions WHERE id = ?",
+                contextHash, sessionId);
+    }
+
+    private void age(UUID... hashes) {
+        for (UUID hash : hashes) {
+            jdbcTemplate.update("UPDATE context_blobs SET referenced_at = now() - INTERVAL '30 days' WHERE hash = ?", hash);
+        }
+    }
+
+    private boolean exists(UUID hash) {
+        return jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM context_blobs WHERE hash = ?)", Boolean.class, hash);
+    }
+}
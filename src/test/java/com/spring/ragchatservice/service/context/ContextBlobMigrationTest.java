@@ -0,0 +1,74 @@
+package com.spring.ragchatservice.service.context;
+
+import com.spring.ragchatservice.support.TestServices;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Migrates a database of its own from before context_blobs, with contexts still inline.
+ */
+class ContextBlobMigrationTest {
+
+    @Test
+    void movesInlineContextsIntoBlobsInBatches() {
+        DataSource dataSource = TestServices.newDatabase("context_blob_test");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        flyway(dataSource, "5").migrate();
+
+        UUID sessionId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO chat_sessions (id, user_id, title) VALUES (?, 'user', 'inline')", sessionId);
+        // More rows than a batch, in the legacy partition and the current month's, three contexts between them
+        for (Instant createdAt : new Instant[]{Instant.parse("2020-01-15T10:00:00Z"), Instant.now()}) {
+            jdbcTemplate.update("INSERT INTO chat_messages (id, session_id, sender, content, retrieved_context, created_at) " +
+                            "SELECT gen_random_uuid(), ?, 'AI', 'reply', CASE WHEN n % 4 = 0 THEN NULL ELSE 'context ' || n % 4 END, " +
+                            "?::timestamptz + n * INTERVAL '1 millisecond' FROM generate_series(1, 1500) AS n",
+                    sessionId, Timestamp.from(createdAt));
+        }
+
+        flyway(dataSource, null).migrate();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM context_blobs", Integer.class)).isEqualTo(3);
+        ContextBlobStore store = new ContextBlobStore(jdbcTemplate, 3, 10, false);
+        for (int i = 1; i <= 3; i++) {
+            UUID hash = ContextBlobStore.hash("context " + i);
+            assertThat(store.find(hash)).isEqualTo("context " + i);
+            assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM chat_messages WHERE context_hash = ?", Integer.class, hash))
+                    .isEqualTo(750);
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM chat_messages WHERE context_hash IS NULL", Integer.class))
+                .isEqualTo(750);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM information_schema.columns " +
+                "WHERE table_name = 'chat_messages' AND column_name = 'retrieved_context'", Integer.class)).isZero();
+
+        // Every partition's validated key is adopted by the one on chat_messages
+        assertThat(jdbcTemplate.queryForObject("SELECT bool_and(c.convalidated AND c.conparentid <> 0) FROM pg_inherits i " +
+                "JOIN pg_constraint c ON c.conrelid = i.inhrelid AND c.confrelid = 'context_blobs'::regclass " +
+                "WHERE i.inhparent = 'chat_messages'::regclass", Boolean.class)).isTrue();
+        assertThatThrownBy(() -> jdbcTemplate.update(
+                "INSERT INTO chat_messages (id, session_id, sender, content, context_hash) VALUES (?, ?, 'AI', 'reply', ?)",
+                UUID.randomUUID(), sessionId, UUID.randomUUID()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private static Flyway flyway(DataSource dataSource, String target) {
+        var configuration = Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"));
+        if (target != null) {
+            configuration.target(target);
+        }
+        return configuration.load();
+    }
+}
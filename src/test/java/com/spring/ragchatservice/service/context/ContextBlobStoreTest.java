@@ -0,0 +1,70 @@
+package com.spring.ragchatservice.service.context;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextBlobStoreTest extends IntegrationTest {
+
+    @Autowired
+    private ContextBlobStore store;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void storesEachContextOnceAndReadsItBack() {
+        String context = "retrieved " + UUID.randomUUID() + " ".repeat(400) + "end";
+
+        UUID hash = store.save(context);
+
+        assertThat(store.save(context)).isEqualTo(hash);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM context_blobs WHERE hash = ?", Integer.class, hash)).isOne();
+        assertThat(codec(hash)).isEqualTo(ContextBlobStore.CODEC_ZSTD);
+        assertThat(store.find(hash)).isEqualTo(context);
+    }
+
+    @Test
+    void keepsShortContextsUncompressed() {
+        String context = "é" + UUID.randomUUID();
+
+        UUID hash = store.save(context);
+
+        assertThat(codec(hash)).isEqualTo(ContextBlobStore.CODEC_RAW);
+        assertThat(store.find(hash)).isEqualTo(context);
+        assertThat(store.find(UUID.randomUUID())).isNull();
+        assertThat(store.save(null)).isNull();
+    }
+
+    @Test
+    void inlinesContextsOnlyWhenEnabled() {
+        String context = "inlined " + UUID.randomUUID();
+        UUID hash = store.save(context);
+        ContextBlobStore inlining = new ContextBlobStore(jdbcTemplate, 3, 10, true);
+
+        List<ChatMessageDTO> listed = inlining.inline(List.of(message(hash, null), message(hash, null), message(null, null)));
+        assertThat(listed).extracting(ChatMessageDTO::getRetrievedContext).containsExactly(context, context, null);
+
+        ChatMessageDTO cleared = store.inline(message(hash, context));
+        assertThat(cleared.getRetrievedContext()).isNull();
+        assertThat(cleared.getContextHash()).isEqualTo(hash);
+    }
+
+    private short codec(UUID hash) {
+        return jdbcTemplate.queryForObject("SELECT codec FROM context_blobs WHERE hash = ?", Short.class, hash);
+    }
+
+    private static ChatMessageDTO message(UUID contextHash, String context) {
+        ChatMessageDTO message = new ChatMessageDTO(UUID.randomUUID(), UUID.randomUUID(), "AI", "reply", contextHash, Instant.now());
+        message.setRetrievedContext(context);
+        return message;
+    }
+}
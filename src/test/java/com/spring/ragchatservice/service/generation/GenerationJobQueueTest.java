@@ -0,0 +1,127 @@
+package com.spring.ragchatservice.service.generation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.spring.ragchatservice.dto.GenerationStatus;
+import com.spring.ragchatservice.support.TestServices;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against a Redis of its own, so the workers of an application context booted by another
+ * test cannot take these jobs.
+ */
+class GenerationJobQueueTest {
+
+    private static final Duration POLL = Duration.ofMillis(200);
+    private static final Duration CLAIM_IDLE = Duration.ofMillis(300);
+
+    private static RedisServer redis;
+    private static int port;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private RedissonClient redissonClient;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        port = TestServices.freePort();
+        redis = new RedisServer(port);
+        redis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void connect() {
+        redissonClient = TestServices.redisson(port);
+        redissonClient.getKeys().flushall();
+    }
+
+    @AfterEach
+    void disconnect() {
+        redissonClient.shutdown();
+    }
+
+    @Test
+    void deliversEachJobToOneWorker() throws InterruptedException {
+        GenerationJobQueue node = queue(true);
+        GenerationJobQueue otherNode = queue(true);
+        GenerationJob job = job();
+
+        node.submit(job);
+
+        assertThat(otherNode.poll(POLL)).isEqualTo(job);
+        assertThat(node.poll(POLL)).isNull();
+        assertThat(node.getStatus(job.messageId()).getStatus()).isEqualTo(GenerationStatus.QUEUED);
+    }
+
+    @Test
+    void redeliversAJobWhoseWorkerDied() throws InterruptedException {
+        GenerationJobQueue crashed = queue(true);
+        GenerationJobQueue survivor = queue(true);
+        GenerationJob job = job();
+        crashed.submit(job);
+        assertThat(crashed.poll(POLL)).isEqualTo(job);
+
+        // Never completed: the entry stays pending and is claimed once idle
+        Thread.sleep(CLAIM_IDLE.toMillis() + 100);
+
+        assertThat(survivor.poll(POLL)).isEqualTo(job);
+        survivor.complete(job);
+        Thread.sleep(CLAIM_IDLE.toMillis() + 100);
+        assertThat(queue(true).poll(POLL)).isNull();
+    }
+
+    @Test
+    void requeuesAnInterruptedJobForImmediatePickUp() throws InterruptedException {
+        GenerationJobQueue stopping = queue(true);
+        GenerationJobQueue other = queue(true);
+        GenerationJob job = job();
+        stopping.submit(job);
+        assertThat(stopping.poll(POLL)).isEqualTo(job);
+
+        stopping.requeue(job);
+
+        assertThat(other.getStatus(job.messageId()).getStatus()).isEqualTo(GenerationStatus.QUEUED);
+        assertThat(other.poll(POLL)).isEqualTo(job);
+    }
+
+    @Test
+    void failsLocalJobsOnShutdown() throws InterruptedException {
+        GenerationJobQueue local = queue(false);
+        GenerationJob running = job();
+        GenerationJob waiting = job();
+        local.submit(running);
+        local.submit(waiting);
+        assertThat(local.poll(POLL)).isEqualTo(running);
+
+        local.requeue(running);
+        local.failLocal();
+
+        assertThat(local.getStatus(running.messageId()).getStatus()).isEqualTo(GenerationStatus.FAILED);
+        assertThat(local.getStatus(waiting.messageId()).getStatus()).isEqualTo(GenerationStatus.FAILED);
+        assertThat(local.poll(POLL)).isNull();
+    }
+
+    private GenerationJobQueue queue(boolean redisEnabled) {
+        return new GenerationJobQueue(redissonClient, objectMapper, redisEnabled, Duration.ofMinutes(1), CLAIM_IDLE);
+    }
+
+    private static GenerationJob job() {
+        return new GenerationJob(UUID.randomUUID(), UUID.randomUUID(), "prompt", null);
+    }
+}
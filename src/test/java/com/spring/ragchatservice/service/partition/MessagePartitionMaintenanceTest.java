@@ -0,0 +1,128 @@
+package com.spring.ragchatservice.service.partition;
+
+import com.spring.ragchatservice.support.TestServices;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Migrates a database of its own from the unpartitioned schema, with rows already in it.
+ */
+class MessagePartitionMaintenanceTest {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private UUID sessionId;
+    private UUID dated;
+    private UUID undated;
+
+    @BeforeEach
+    void migrateWithLegacyRows() {
+        dataSource = TestServices.newDatabase("partition_test");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        flyway("3").migrate();
+
+        sessionId = UUID.randomUUID();
+        dated = UUID.randomUUID();
+        undated = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO chat_sessions (id, user_id, title) VALUES (?, 'user', 'legacy')", sessionId);
+        jdbcTemplate.update("INSERT INTO chat_messages (id, session_id, sender, content, created_at) VALUES (?, ?, 'USER', 'old', ?)",
+                dated, sessionId, Timestamp.from(Instant.parse("2020-01-15T10:00:00Z")));
+        jdbcTemplate.update("INSERT INTO chat_messages (id, session_id, sender, content, created_at, updated_at) VALUES (?, ?, 'AI', 'undated', NULL, ?)",
+                undated, sessionId, Timestamp.from(Instant.parse("2020-01-15T10:00:01Z")));
+
+        flyway(null).migrate();
+    }
+
+    @Test
+    void attachesTheExistingRowsAsTheLegacyPartition() {
+        assertThat(partitions()).contains("chat_messages_legacy", "chat_messages_p" + YearMonth.now(ZoneOffset.UTC).plusMonths(1).format(SUFFIX));
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM chat_messages WHERE session_id = ? ORDER BY created_at", UUID.class, sessionId))
+                .containsExactly(dated, undated);
+        assertThat(jdbcTemplate.queryForObject("SELECT created_at FROM chat_messages WHERE id = ?", Timestamp.class, undated).toInstant())
+                .isEqualTo(Instant.parse("2020-01-15T10:00:01Z"));
+        // The checks added for the migration are gone, and the concurrently built index is valid
+        assertThat(jdbcTemplate.queryForList("SELECT conname FROM pg_constraint WHERE conrelid = 'chat_messages_legacy'::regclass AND contype = 'c'", String.class))
+                .isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT bool_and(indisvalid) FROM pg_index WHERE indrelid = 'chat_messages_legacy'::regclass", Boolean.class))
+                .isTrue();
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        jdbcTemplate.update("INSERT INTO chat_messages (id, session_id, sender, content, created_at) VALUES (?, ?, 'USER', 'new', ?)",
+                dated, sessionId, Timestamp.from(now));
+        assertThatThrownBy(() -> jdbcTemplate.update(
+                "INSERT INTO chat_messages (id, session_id, sender, content, created_at) VALUES (?, ?, 'USER', 'again', ?)",
+                dated, sessionId, Timestamp.from(now)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void createsPartitionsAheadAndDetachesExpiredOnes() throws SQLException {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        maintenance(5, 0, false).maintain();
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(partitions()).contains("chat_messages_p" + current.plusMonths(i).format(SUFFIX));
+        }
+
+        // Fourteen months on, a twelve month retention expires the legacy rows and next month's partition
+        YearMonth later = current.plusMonths(14);
+        try (Connection connection = dataSource.getConnection()) {
+            maintenance(5, 12, false).maintain(connection, later);
+        }
+
+        List<String> attached = partitions();
+        assertThat(attached).doesNotContain("chat_messages_legacy", "chat_messages_p" + current.plusMonths(1).format(SUFFIX))
+                .contains("chat_messages_p" + current.plusMonths(2).format(SUFFIX), "chat_messages_p" + later.plusMonths(5).format(SUFFIX));
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM chat_messages_legacy", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM chat_messages", Integer.class)).isZero();
+
+        try (Connection connection = dataSource.getConnection()) {
+            maintenance(5, 11, true).maintain(connection, later);
+        }
+        assertThat(partitions()).doesNotContain("chat_messages_p" + current.plusMonths(2).format(SUFFIX));
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass('chat_messages_p" + current.plusMonths(2).format(SUFFIX) + "') IS NULL", Boolean.class))
+                .isTrue();
+    }
+
+    private Flyway flyway(String target) {
+        var configuration = Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"));
+        if (target != null) {
+            configuration.target(target);
+        }
+        return configuration.load();
+    }
+
+    private MessagePartitionMaintenance maintenance(int premakeMonths, int retentionMonths, boolean dropDetached) {
+        return new MessagePartitionMaintenance(jdbcTemplate, true, premakeMonths, retentionMonths, dropDetached);
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'chat_messages'::regclass",
+                String.class);
+    }
+}
@@ -0,0 +1,96 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int VECTORS = 5_000;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    @Test
+    void recallMatchesBruteForce() {
+        SplittableRandom random = new SplittableRandom(7);
+        float[][] vectors = new float[VECTORS][];
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100);
+        for (int i = 0; i < VECTORS; i++) {
+            vectors[i] = unitVector(random);
+            assertThat(index.add(vectors[i])).isEqualTo(i);
+        }
+
+        int found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = unitVector(random);
+            Set<Integer> exact = bruteForce(vectors, query);
+            for (HnswSearch.Neighbour neighbour : HnswSearch.search(index, query, K, 64)) {
+                if (exact.contains(neighbour.node())) {
+                    found++;
+                }
+            }
+        }
+
+        assertThat((double) found / (QUERIES * K)).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void returnsNearestFirstAndFindsExactMatches() {
+        SplittableRandom random = new SplittableRandom(11);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        float[][] vectors = new float[500][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = unitVector(random);
+            index.add(vectors[i]);
+        }
+
+        for (int node = 0; node < vectors.length; node += 50) {
+            List<HnswSearch.Neighbour> results = HnswSearch.search(index, vectors[node], 5, 32);
+            assertThat(results).hasSize(5);
+            assertThat(results.get(0).node()).isEqualTo(node);
+            assertThat(results).isSortedAccordingTo(HnswSearch.NEAREST_FIRST);
+        }
+    }
+
+    @Test
+    void searchesAnEmptyIndex() {
+        assertThat(HnswSearch.search(new HnswIndex(DIMENSION, 16, 100), new float[DIMENSION], K, 64)).isEmpty();
+    }
+
+    private static Set<Integer> bruteForce(float[][] vectors, float[] query) {
+        float[] similarities = new float[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            for (int d = 0; d < DIMENSION; d++) {
+                similarities[i] += query[d] * vectors[i][d];
+            }
+        }
+        int[] nearest = IntStream.range(0, vectors.length).boxed()
+                .sorted((a, b) -> Float.compare(similarities[b], similarities[a]))
+                .limit(K)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        return new HashSet<>(Arrays.stream(nearest).boxed().toList());
+    }
+
+    static float[] unitVector(SplittableRandom random) {
+        float[] vector = new float[DIMENSION];
+        float norm = 0;
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (float) random.nextGaussian();
+            norm += vector[d] * vector[d];
+        }
+        norm = (float) Math.sqrt(norm);
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] /= norm;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,108 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedSegmentTest {
+
+    private static final int DIMENSION = 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsVectorsGraphAndChunks() throws IOException {
+        SplittableRandom random = new SplittableRandom(3);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        List<DocumentChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            index.add(HnswIndexTest.unitVector(random));
+            chunks.add(new DocumentChunk("doc-" + i / 10, i % 10, "chunk " + i + " é中"));
+        }
+
+        MappedSegment.write(directory, "segment-000000000001", index, DIMENSION, chunks);
+        MappedSegment segment = MappedSegment.open(directory, "segment-000000000001");
+
+        assertThat(segment.size()).isEqualTo(index.size());
+        assertThat(segment.dimension()).isEqualTo(DIMENSION);
+        assertThat(segment.entryPoint()).isEqualTo(index.entryPoint());
+        assertThat(segment.maxLevel()).isEqualTo(index.maxLevel());
+        int[] expected = new int[index.maxNeighbours()];
+        int[] actual = new int[segment.maxNeighbours()];
+        for (int node = 0; node < index.size(); node++) {
+            assertThat(segment.vector(node)).containsExactly(index.vector(node));
+            assertThat(segment.chunk(node)).isEqualTo(chunks.get(node));
+            for (int level = 0; level <= index.levelOf(node); level++) {
+                int count = index.neighbours(node, level, expected);
+                assertThat(segment.neighbours(node, level, actual)).isEqualTo(count);
+                for (int i = 0; i < count; i++) {
+                    assertThat(actual[i]).isEqualTo(expected[i]);
+                }
+            }
+        }
+
+        float[] query = HnswIndexTest.unitVector(random);
+        assertThat(HnswSearch.search(segment, query, 10, 64)).isEqualTo(HnswSearch.search(index, query, 10, 64));
+    }
+
+    @Test
+    void rejectsAFileOfAnotherFormat() throws IOException {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        index.add(HnswIndexTest.unitVector(new SplittableRandom(1)));
+        MappedSegment.write(directory, "segment-000000000001", index, DIMENSION,
+                List.of(new DocumentChunk("doc", 0, "text")));
+        Files.write(directory.resolve("segment-000000000001" + MappedSegment.GRAPH), new byte[64]);
+
+        assertThatThrownBy(() -> MappedSegment.open(directory, "segment-000000000001"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(".hnsw");
+    }
+
+    @Test
+    void deletesItsFilesOnlyOnceTheLastReferenceIsReleased() throws IOException {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        index.add(HnswIndexTest.unitVector(new SplittableRandom(1)));
+        MappedSegment.write(directory, "segment-000000000001", index, DIMENSION,
+                List.of(new DocumentChunk("doc", 0, "text")));
+        MappedSegment segment = MappedSegment.open(directory, "segment-000000000001");
+        Path vectors = directory.resolve("segment-000000000001" + MappedSegment.VECTORS);
+
+        assertThat(segment.retain()).isTrue();
+        segment.release();
+        assertThat(vectors).exists();
+        assertThat(segment.chunk(0).content()).isEqualTo("text");
+
+        segment.release();
+        assertThat(vectors).doesNotExist();
+        assertThat(segment.retain()).isFalse();
+    }
+
+    @Test
+    void readsAcrossRegionBoundariesWithLongOffsets() throws IOException {
+        Path file = directory.resolve("regions");
+        try (SegmentFileWriter out = new SegmentFileWriter(file)) {
+            out.putInt(7).putBytes(new byte[]{1, 2, 3}).putLong(Long.MAX_VALUE - 1).putInt(-5);
+            out.commit();
+        }
+
+        // Five-byte regions split the bytes and the long
+        MappedRegions regions = MappedRegions.map(file, 5);
+        assertThat(regions.size()).isEqualTo(19);
+        assertThat(regions.getInt(0)).isEqualTo(7);
+        assertThat(regions.getLong(7)).isEqualTo(Long.MAX_VALUE - 1);
+        assertThat(regions.getInt(15)).isEqualTo(-5);
+        byte[] bytes = new byte[3];
+        regions.get(4, bytes);
+        assertThat(bytes).containsExactly(1, 2, 3);
+    }
+}
@@ -0,0 +1,135 @@
+package com.spring.ragchatservice.service.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class SegmentedIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @TempDir
+    Path directory;
+
+    private final SplittableRandom random = new SplittableRandom(5);
+
+    @Test
+    void reopensWhatTheManifestLists() throws IOException {
+        SegmentedIndex index = open();
+        float[] target = append(index, "a", 20).get(7);
+        append(index, "b", 30);
+
+        SegmentedIndex reopened = open();
+
+        assertThat(reopened.size()).isEqualTo(50);
+        assertThat(reopened.segmentCount()).isEqualTo(index.segmentCount());
+        assertThat(Files.readAllLines(directory.resolve("MANIFEST"))).hasSize(index.segmentCount());
+        SegmentedIndex.ScoredChunk best = reopened.search(target, 1, 32).get(0);
+        assertThat(best.chunk()).isEqualTo(new DocumentChunk("a", 7, "a-7"));
+        assertThat(best.score()).isCloseTo(1f, offset(1e-5f));
+    }
+
+    @Test
+    void removesFilesTheManifestDoesNotList() throws IOException {
+        append(open(), "a", 10);
+        Files.write(directory.resolve("segment-000000000099.vec"), new byte[8]);
+        Files.write(directory.resolve("segment-000000000002.hnsw.tmp"), new byte[8]);
+        Files.write(directory.resolve("MANIFEST.tmp"), List.of("segment-000000000099"));
+
+        open();
+
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .noneMatch(name -> name.contains("99") || name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    void groupCommitsConcurrentAppends() throws Exception {
+        SegmentedIndex index = open();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> appends = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                String documentId = "doc-" + i;
+                List<float[]> vectors = vectors(5);
+                appends.add(executor.submit((Callable<Void>) () -> {
+                    index.append(chunks(documentId, 5), vectors);
+                    return null;
+                }));
+            }
+            for (Future<?> append : appends) {
+                append.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(index.size()).isEqualTo(160);
+        assertThat(index.segmentCount()).isBetween(1, 32);
+        assertThat(open().size()).isEqualTo(160);
+    }
+
+    @Test
+    void compactionKeepsResultsAndDeletesMergedFiles() throws IOException {
+        SegmentedIndex index = open();
+        List<float[]> targets = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            targets.add(append(index, "doc-" + i, 25).get(i));
+        }
+        List<String> merged = Files.readAllLines(directory.resolve("MANIFEST"));
+
+        assertThat(index.compact(2)).isTrue();
+
+        assertThat(index.segmentCount()).isEqualTo(1);
+        assertThat(index.size()).isEqualTo(100);
+        for (int i = 0; i < targets.size(); i++) {
+            assertThat(index.search(targets.get(i), 1, 64).get(0).chunk().documentId()).isEqualTo("doc-" + i);
+        }
+        for (String name : merged) {
+            assertThat(directory.resolve(name + MappedSegment.VECTORS)).doesNotExist();
+        }
+        assertThat(open().size()).isEqualTo(100);
+    }
+
+    private SegmentedIndex open() throws IOException {
+        SegmentedIndex index = new SegmentedIndex(directory, DIMENSION, 8, 50, 1_000);
+        index.open();
+        return index;
+    }
+
+    private List<float[]> append(SegmentedIndex index, String documentId, int count) throws IOException {
+        List<float[]> vectors = vectors(count);
+        index.append(chunks(documentId, count), vectors);
+        return vectors;
+    }
+
+    private List<float[]> vectors(int count) {
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vectors.add(HnswIndexTest.unitVector(random));
+        }
+        return vectors;
+    }
+
+    private static List<DocumentChunk> chunks(String documentId, int count) {
+        List<DocumentChunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(new DocumentChunk(documentId, i, documentId + "-" + i));
+        }
+        return chunks;
+    }
+}
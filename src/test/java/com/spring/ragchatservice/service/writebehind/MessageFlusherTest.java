@@ -0,0 +1,125 @@
+package com.spring.ragchatservice.service.writebehind;
+
+import com.spring.ragchatservice.dto.ChatMessageDTO;
+import com.spring.ragchatservice.dto.CreateSessionRequest;
+import com.spring.ragchatservice.service.ChatMessageService;
+import com.spring.ragchatservice.service.ChatSessionService;
+import com.spring.ragchatservice.service.context.ContextBlobStore;
+import com.spring.ragchatservice.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamRangeArgs;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@TestPropertySource(properties = "app.messages.write-behind.enabled=true")
+class MessageFlusherTest extends IntegrationTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private MessageWriteBuffer writeBuffer;
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void commitsBufferedMessagesWithTheirContext() {
+        UUID sessionId = session();
+        String context = "Refunds are accepted within 30 days. " + UUID.randomUUID();
+
+        ChatMessageDTO accepted = writeBuffer.append(sessionId, "USER", "Can I get a refund?", context);
+
+        assertThat(accepted.getContextHash()).isEqualTo(ContextBlobStore.hash(context));
+        await().atMost(TIMEOUT).until(() -> stored(accepted.getId()));
+        assertThat(chatMessageService.getRetrievedContext(sessionId, accepted.getContextHash())).isEqualTo(context);
+        await().atMost(TIMEOUT).until(() -> writeBuffer.pendingMap(sessionId).isEmpty());
+        assertThat(chatMessageService.getSessionMessages(sessionId))
+                .extracting(ChatMessageDTO::getId)
+                .containsExactly(accepted.getId());
+    }
+
+    @Test
+    void servesThePendingContextBeforeTheFlush() {
+        UUID sessionId = session();
+        String context = "Not yet flushed " + UUID.randomUUID();
+        UUID hash = ContextBlobStore.hash(context);
+        // Only in the pending map, so the flusher never sees it
+        ChatMessageDTO pending = new ChatMessageDTO(UUID.randomUUID(), sessionId, "USER", "question", context, hash,
+                Instant.now().truncatedTo(ChronoUnit.MICROS));
+        writeBuffer.pendingMap(sessionId).fastPut(pending.getId().toString(), pending);
+
+        assertThat(chatMessageService.getRetrievedContext(sessionId, hash)).isEqualTo(context);
+        assertThat(chatMessageService.getSessionMessages(sessionId))
+                .singleElement()
+                .satisfies(listed -> {
+                    assertThat(listed.getContextHash()).isEqualTo(hash);
+                    assertThat(listed.getRetrievedContext()).isNull();
+                });
+    }
+
+    @Test
+    void movesRejectedMessagesToTheDeadLetterStream() {
+        UUID sessionId = session();
+
+        ChatMessageDTO kept = writeBuffer.append(sessionId, "USER", "kept", null);
+        // Longer than the sender column allows, so Postgres refuses the row
+        ChatMessageDTO refused = writeBuffer.append(sessionId, "X".repeat(51), "refused", null);
+
+        await().atMost(TIMEOUT).until(() -> stored(kept.getId()));
+        await().atMost(TIMEOUT).untilAsserted(() -> assertThat(deadLetters().values())
+                .anySatisfy(fields -> {
+                    assertThat(fields.get("message")).contains(refused.getId().toString());
+                    assertThat(fields.get("error")).contains("character varying(50)");
+                }));
+        assertThat(stored(refused.getId())).isFalse();
+        await().atMost(TIMEOUT).until(() -> writeBuffer.pendingMap(sessionId).isEmpty());
+    }
+
+    @Test
+    void dropsMessagesOfDeletedSessions() {
+        UUID deletedSession = UUID.randomUUID();
+
+        ChatMessageDTO orphan = writeBuffer.append(deletedSession, "USER", "orphan", null);
+
+        await().atMost(TIMEOUT).until(() -> writeBuffer.pendingMap(deletedSession).isEmpty());
+        assertThat(stored(orphan.getId())).isFalse();
+    }
+
+    private UUID session() {
+        CreateSessionRequest request = new CreateSessionRequest();
+        request.setUserId("flusher-test");
+        request.setTitle("Write-behind " + UUID.randomUUID());
+        return chatSessionService.createChatSession(request).getId();
+    }
+
+    private boolean stored(UUID messageId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM chat_messages WHERE id = ?", Integer.class, messageId) == 1;
+    }
+
+    private Map<?, Map<String, String>> deadLetters() {
+        return redissonClient.<String, String>getStream(MessageWriteBuffer.DEAD_LETTER_KEY, StringCodec.INSTANCE)
+                .range(StreamRangeArgs.startId(StreamMessageId.MIN).endId(StreamMessageId.MAX));
+    }
+}
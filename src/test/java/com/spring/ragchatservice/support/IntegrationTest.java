@@ -0,0 +1,26 @@
+package com.spring.ragchatservice.support;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Base for tests that boot the application against {@link TestServices}. Subclasses that add no
+ * properties of their own share one application context.
+ */
+@SpringBootTest
+public abstract class IntegrationTest {
+
+    @DynamicPropertySource
+    static void services(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", TestServices::jdbcUrl);
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        registry.add("spring.data.redis.host", () -> "127.0.0.1");
+        registry.add("spring.data.redis.port", TestServices::redisPort);
+        registry.add("spring.data.redis.password", () -> "");
+        registry.add("app.ai.router.backends", () -> "stub");
+        registry.add("app.retrieval.index.dir", () -> "target/test-data/retrieval-index");
+        registry.add("app.messages.archive.dir", () -> "target/test-data/message-archive");
+    }
+}
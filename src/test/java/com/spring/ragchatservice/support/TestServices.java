@@ -0,0 +1,108 @@
+package com.spring.ragchatservice.support;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import redis.embedded.RedisServer;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Embedded Postgres and Redis shared by every test in the JVM, started on first use and stopped
+ * when the JVM exits. Nothing needs to be installed or running.
+ */
+public final class TestServices {
+
+    private static EmbeddedPostgres postgres;
+    private static RedisServer redis;
+    private static int redisPort;
+
+    private TestServices() {
+    }
+
+    public static synchronized EmbeddedPostgres postgres() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.builder().start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot start embedded Postgres", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ignored) {
+                    // exiting anyway
+                }
+            }));
+        }
+        return postgres;
+    }
+
+    public static String jdbcUrl() {
+        return postgres().getJdbcUrl("postgres", "postgres");
+    }
+
+    /**
+     * Creates an empty database, for tests that need a schema of their own (e.g. migrations).
+     */
+    public static DataSource newDatabase(String name) {
+        try (Connection connection = postgres().getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + name);
+            statement.execute("CREATE DATABASE " + name);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot create database " + name, e);
+        }
+        return postgres.getDatabase("postgres", name);
+    }
+
+    public static synchronized int redisPort() {
+        if (redis == null) {
+            try {
+                redisPort = freePort();
+                redis = new RedisServer(redisPort);
+                redis.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot start embedded Redis", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    redis.stop();
+                } catch (IOException ignored) {
+                    // exiting anyway
+                }
+            }));
+        }
+        return redisPort;
+    }
+
+    /**
+     * @return A new client of the shared Redis; the caller shuts it down
+     */
+    public static RedissonClient redisson() {
+        return redisson(redisPort());
+    }
+
+    public static RedissonClient redisson(int port) {
+        Config config = new Config();
+        config.useSingleServer()
+                .setAddress("redis://127.0.0.1:" + port)
+                .setConnectTimeout(500)
+                .setTimeout(500)
+                .setRetryAttempts(0);
+        return Redisson.create(config);
+    }
+
+    public static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}